@@ -0,0 +1,76 @@
+package com.birblett.impl.command.alias;
+
+import com.birblett.accessor.command.CommandSourceModifier;
+import com.birblett.accessor.command.delay.AliasedCommandSource;
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.StringArgumentType;
+import com.mojang.brigadier.builder.LiteralArgumentBuilder;
+import com.mojang.brigadier.builder.RequiredArgumentBuilder;
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.command.CommandManager;
+import net.minecraft.server.command.ServerCommandSource;
+import org.mockito.Mockito;
+
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+
+/**
+ * Shared setup for alias benchmarks. Mixins aren't applied outside the game, so command sources are mocks that
+ * implement the mixin accessor interfaces, and commands run against a dispatcher that only knows a no-op /say.
+ */
+public class AliasBenchmarks {
+
+    public static final String[] EXAMPLES = {"echo", "fizzbuzz", "math"};
+    private static boolean initialized = false;
+    private static CommandDispatcher<ServerCommandSource> dispatcher;
+    private static ServerCommandSource source;
+    private static Method compile;
+
+    public static synchronized void init() throws Exception {
+        if (initialized) {
+            return;
+        }
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+        dispatcher = new CommandDispatcher<>();
+        dispatcher.register(LiteralArgumentBuilder.<ServerCommandSource>literal("say")
+                .then(RequiredArgumentBuilder.<ServerCommandSource, String>argument("message", StringArgumentType.greedyString())
+                        .executes(context -> 1)));
+        MinecraftServer server = Mockito.mock(MinecraftServer.class);
+        CommandManager commandManager = Mockito.mock(CommandManager.class);
+        Mockito.when(server.getCommandManager()).thenReturn(commandManager);
+        Mockito.when(commandManager.getDispatcher()).thenReturn(dispatcher);
+        source = Mockito.mock(ServerCommandSource.class, Mockito.withSettings()
+                .extraInterfaces(CommandSourceModifier.class, AliasedCommandSource.class));
+        Mockito.when(source.getServer()).thenReturn(server);
+        Mockito.when(source.hasPermissionLevel(Mockito.anyInt())).thenReturn(true);
+        compile = AliasedCommand.class.getDeclaredMethod("compile");
+        compile.setAccessible(true);
+        Path examples = Path.of(System.getProperty("technical_toolbox.examples", "examples/alias"));
+        for (String name : EXAMPLES) {
+            if (!AliasedCommand.readFromFile(examples.resolve(name + ".alias"), false)) {
+                throw new IllegalStateException("Couldn't read example alias " + name);
+            }
+            AliasManager.ALIASES.get(name).register(dispatcher);
+        }
+        initialized = true;
+    }
+
+    public static CommandDispatcher<ServerCommandSource> dispatcher() {
+        return dispatcher;
+    }
+
+    public static ServerCommandSource source() {
+        return source;
+    }
+
+    /**
+     * Runs the compiler only, without optimizing or registering.
+     */
+    public static boolean compile(AliasedCommand command) throws Exception {
+        return (boolean) compile.invoke(command);
+    }
+
+}
@@ -0,0 +1,38 @@
+package com.birblett.impl.command.alias;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compilation of the bundled example aliases, with and without the optimizer and Brigadier registration.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompileBenchmark {
+
+    @Param({"echo", "fizzbuzz", "math"})
+    public String alias;
+    private AliasedCommand command;
+
+    @Setup
+    public void setup() throws Exception {
+        AliasBenchmarks.init();
+        this.command = AliasManager.ALIASES.get(this.alias);
+    }
+
+    @Benchmark
+    public boolean compile() throws Exception {
+        return AliasBenchmarks.compile(this.command);
+    }
+
+    @Benchmark
+    public boolean register() {
+        return this.command.register(AliasBenchmarks.dispatcher());
+    }
+
+}
@@ -0,0 +1,36 @@
+package com.birblett.impl.command.alias;
+
+import com.mojang.brigadier.ParseResults;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import net.minecraft.server.command.ServerCommandSource;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full interpreter runs of the fizzbuzz example, including dispatching each generated /say line.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InterpreterBenchmark {
+
+    @Param({"15", "100"})
+    public int loops;
+    private ParseResults<ServerCommandSource> fizzbuzz;
+
+    @Setup
+    public void setup() throws Exception {
+        AliasBenchmarks.init();
+        this.fizzbuzz = AliasBenchmarks.dispatcher().parse("fizzbuzz " + this.loops, AliasBenchmarks.source());
+    }
+
+    @Benchmark
+    public int fizzbuzz() throws CommandSyntaxException {
+        return AliasBenchmarks.dispatcher().execute(this.fizzbuzz);
+    }
+
+}
@@ -0,0 +1,70 @@
+package com.birblett.impl.command.alias.language;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Expression parsing and evaluation, plus the boxed {@link Operator} arithmetic still used for return values.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExpressionBenchmark {
+
+    @Param({"i % 3 + i * 2 - 7", "(i + a) * (b - i) / 4 ^ 2", "s + \" \" + i + b"})
+    public String expression;
+    private final ExpressionParser parser = s -> {
+        throw new IllegalStateException(s);
+    };
+    private final List<LinkedHashMap<String, Variable.Definition>> scope = List.of(new LinkedHashMap<>());
+    private final Frame frame = new Frame(5);
+    private final Operator.NumberOperator longOperand = new Operator.NumberOperator(15L);
+    private final Operator.NumberOperator doubleOperand = new Operator.NumberOperator(2.5);
+    private Expression compiled;
+
+    @Setup
+    public void setup() {
+        LinkedHashMap<String, Variable.Definition> vars = this.scope.getFirst();
+        vars.put("i", new Variable.Definition("i", "long", new String[0], 0));
+        vars.put("a", new Variable.Definition("a", "long", new String[0], 1));
+        vars.put("b", new Variable.Definition("b", "double", new String[0], 2));
+        vars.put("s", new Variable.Definition("s", "string", new String[0], 3));
+        this.frame.setLong(0, 15);
+        this.frame.setLong(1, 7);
+        this.frame.setDouble(2, 2.5);
+        this.frame.setObject(3, "fizz");
+        this.compiled = this.parse();
+    }
+
+    @Benchmark
+    public Expression parse() {
+        Queue<Object> post = new LinkedList<>();
+        this.parser.parseExpression(this.expression, null, this.scope, post);
+        return Expression.fromPostfix(post);
+    }
+
+    @Benchmark
+    public byte evaluate() {
+        Expression.store(this.compiled, this.frame, 4);
+        return this.frame.kind(4);
+    }
+
+    @Benchmark
+    public Operator numberOperatorLong() {
+        return this.longOperand.operation("*", this.longOperand);
+    }
+
+    @Benchmark
+    public Operator numberOperatorMixed() {
+        return this.longOperand.operation("+", this.doubleOperand);
+    }
+
+}
@@ -1,6 +1,7 @@
 package com.birblett.accessor.command.delay;
 
 import com.birblett.impl.command.delay.CommandEvent;
+import com.birblett.util.PrefixIndex;
 import net.minecraft.server.command.ServerCommandSource;
 
 import java.util.HashMap;
@@ -10,5 +11,6 @@ public interface CommandScheduler {
     boolean technicalToolbox$AddCommandEvent(String command, long delay, String id, int priority, boolean silent, ServerCommandSource source);
     boolean technicalToolbox$RemoveCommandEvent(String id);
     HashMap<String, CommandEvent> technicalToolbox$GetCommandEventMap();
+    PrefixIndex technicalToolbox$GetCommandIds();
 
 }
@@ -3,6 +3,7 @@ package com.birblett.impl.command;
 import com.birblett.TechnicalToolbox;
 import com.birblett.impl.config.ConfigOption;
 import com.birblett.impl.config.ConfigOptions;
+import com.birblett.util.ServerUtil;
 import com.birblett.util.TextUtils;
 import com.mojang.brigadier.CommandDispatcher;
 import com.mojang.brigadier.arguments.StringArgumentType;
@@ -72,6 +73,8 @@ public class ToolboxCommand {
                 return 0;
             }
             else {
+                // options can change which commands are visible, e.g. permission levels
+                ServerUtil.markCommandTreeChanged();
                 context.getSource().sendFeedback(() -> TextUtils.formattable("Successfully set value ").append(
                         TextUtils.formattable(value).setStyle(Style.EMPTY.withColor(Formatting.GREEN))).append(
                                 TextUtils.formattable(" for option " + option)), true);
@@ -102,6 +105,9 @@ public class ToolboxCommand {
     private static int reload(CommandContext<ServerCommandSource> context) {
         context.getSource().sendFeedback(() -> TextUtils.formattable("Reloading configs..."), true);
         TechnicalToolbox.CONFIG_MANAGER.readConfigs(context.getSource().getServer());
+        // reloaded options can change which commands are visible, e.g. permission levels
+        ServerUtil.markCommandTreeChanged();
+        ServerUtil.refreshCommandTree(context.getSource().getServer());
         return 1;
     }
 
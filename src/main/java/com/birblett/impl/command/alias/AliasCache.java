@@ -0,0 +1,121 @@
+package com.birblett.impl.command.alias;
+
+import com.birblett.TechnicalToolbox;
+import com.birblett.impl.command.alias.language.ProgramCodec;
+import com.birblett.impl.config.ConfigOptions;
+import net.fabricmc.loader.api.FabricLoader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * On-disk cache of compiled aliases, with one file per alias file, so that aliases that haven't changed since they were
+ * last compiled are registered without being parsed or compiled. Entries are only used if the hash of the alias file,
+ * the toolbox version and the defaults parsing depends on all match, and are rewritten whenever an alias is compiled on
+ * load.
+ */
+public class AliasCache {
+
+    private static final int MAGIC = 0x54544143;
+    // bump whenever the instruction or expression encoding changes
+    private static final int FORMAT = 5;
+    private static final int HEADER_LIMIT = 1024;
+    private static final String TOOLBOX_VERSION = FabricLoader.getInstance().getModContainer("technical_toolbox")
+            .map(container -> container.getMetadata().getVersion().getFriendlyString()).orElse("unknown");
+
+    /**
+     * @param source alias file
+     * @return SHA-256 hash of the alias file, or null if it couldn't be read
+     */
+    public static byte[] hash(Path source) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(source));
+        }
+        catch (IOException | NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads a compiled alias, memory-mapping the cache file.
+     * @param cache cache file
+     * @param hash hash of the alias file, from {@link AliasCache#hash(Path)}
+     * @return the compiled alias ready to be registered, or null if there is no valid entry
+     */
+    public static AliasedCommand load(Path cache, byte[] hash, boolean global) {
+        if (hash == null || !Files.isRegularFile(cache)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(cache, StandardOpenOption.READ)) {
+            // the header is read normally and only entries that are going to be used are mapped, since a mapped file
+            // can't be overwritten on some platforms until it is unmapped
+            ByteBuffer header = ByteBuffer.allocate((int) Math.min(channel.size(), HEADER_LIMIT));
+            channel.read(header, 0);
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != FORMAT || !AliasCache.getKey().equals(ProgramCodec.readString(
+                    header))) {
+                return null;
+            }
+            byte[] stored = new byte[header.getInt()];
+            header.get(stored);
+            if (!Arrays.equals(stored, hash)) {
+                return null;
+            }
+            ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, header.position(), channel.size() - header.position());
+            return AliasedCommand.readCompiled(in, global);
+        }
+        catch (IOException | RuntimeException e) {
+            // anything unreadable is treated as a miss and overwritten once recompiled
+            return null;
+        }
+    }
+
+    /**
+     * Writes a successfully compiled alias to the cache.
+     * @param cache cache file
+     * @param hash hash of the alias file it was compiled from
+     */
+    public static void save(AliasedCommand aliasedCommand, Path cache, byte[] hash) {
+        if (hash == null) {
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            ProgramCodec.writeString(out, AliasCache.getKey());
+            out.writeInt(hash.length);
+            out.write(hash);
+            aliasedCommand.writeCompiled(out);
+        }
+        catch (IOException e) {
+            TechnicalToolbox.warn("Couldn't cache compiled alias {}: {}", aliasedCommand.getAlias(), e.getMessage());
+            return;
+        }
+        try {
+            Files.write(cache, bytes.toByteArray());
+        }
+        catch (IOException e) {
+            TechnicalToolbox.warn("Couldn't write compiled alias cache {}", cache);
+        }
+    }
+
+    /**
+     * Permission and silence are only written to alias files if they differ from the configured defaults, so the
+     * defaults are part of what an entry depends on.
+     */
+    private static String getKey() {
+        return TOOLBOX_VERSION + ";" + ConfigOptions.ALIAS_DEFAULT_PERMISSION.val() + ";" + ConfigOptions
+                .ALIAS_DEFAULT_SILENT.val();
+    }
+
+}
@@ -58,6 +58,20 @@ public class AliasCommand {
                         .then(CommandManager.argument("alias", StringArgumentType.word())
                                 .suggests(AliasCommand::listAliases)
                                 .executes(AliasCommand::compile)))
+                // records per-line timings for an alias
+                .then(CommandManager.literal("profile")
+                        .requires(source -> source.hasPermissionLevel(4))
+                        .then(CommandManager.argument("alias", StringArgumentType.word())
+                                .suggests(AliasCommand::listAliases)
+                                .then(CommandManager.literal("start")
+                                        .executes(AliasCommand::profileStart))
+                                .then(CommandManager.literal("stop")
+                                        .executes(AliasCommand::profileStop))
+                                .then(CommandManager.literal("report")
+                                        .executes(context -> AliasCommand.profileReport(context, 10))
+                                        .then(CommandManager.argument("lines", IntegerArgumentType.integer(1))
+                                                .executes(context -> AliasCommand.profileReport(context, context
+                                                        .getArgument("lines", Integer.class)))))))
                 // modifies an existing alias
                 .then(CommandManager.literal("modify")
                         .requires(source -> source.hasPermissionLevel(4))
@@ -145,7 +159,7 @@ public class AliasCommand {
      * Lists all current aliases as suggestions.
      */
     private static CompletableFuture<Suggestions> listAliases(CommandContext<ServerCommandSource> context, SuggestionsBuilder builder) {
-        return CommandSource.suggestMatching(AliasManager.ALIASES.keySet(), builder);
+        return AliasManager.ALIASES.names().suggest(builder);
     }
 
     /**
@@ -181,15 +195,7 @@ public class AliasCommand {
         for (AliasedCommand alias : AliasManager.ALIASES.values()) {
             alias.deregister(context.getSource().getServer(), false);
         }
-        TechnicalToolbox.ALIAS_MANAGER.readAliases(context.getSource().getServer());
-        for (AliasedCommand aliasedCommand : AliasManager.ALIASES.values()) {
-            try {
-                aliasedCommand.register(context.getSource().getDispatcher());
-            }
-            catch (Exception e) {
-                TechnicalToolbox.error("Something went wrong with compiling alias {}", aliasedCommand.getAlias());
-            }
-        }
+        TechnicalToolbox.ALIAS_MANAGER.loadAliases(context.getSource().getServer(), context.getSource().getDispatcher());
         context.getSource().sendFeedback(() -> TextUtils.formattable("Reloaded aliases from disk"), false);
         ServerUtil.refreshCommandTree(context.getSource().getServer());
         return 0;
@@ -235,7 +241,9 @@ public class AliasCommand {
             }
             if (cmd.refresh(context.getSource())) {
                 context.getSource().sendFeedback(() -> TextUtils.formattable("Successfully compiled alias ")
-                        .append(TextUtils.formattable(alias).formatted(Formatting.GREEN)), false);
+                        .append(TextUtils.formattable(alias).formatted(Formatting.GREEN))
+                        .append(TextUtils.formattable(" (" + cmd.getUnoptimizedInstructionCount() + " -> " +
+                                cmd.getInstructionCount() + " instructions)").formatted(Formatting.GRAY)), false);
                 return 1;
             }
             return 0;
@@ -244,6 +252,58 @@ public class AliasCommand {
         return 0;
     }
 
+    /**
+     * Starts profiling an alias, discarding any previous profile.
+     */
+    private static int profileStart(CommandContext<ServerCommandSource> context) {
+        String alias = context.getArgument("alias", String.class);
+        AliasedCommand cmd = AliasManager.ALIASES.get(alias);
+        if (cmd != null) {
+            cmd.startProfiling();
+            context.getSource().sendFeedback(() -> TextUtils.formattable("Started profiling alias ")
+                    .append(TextUtils.formattable(alias).formatted(Formatting.GREEN)), false);
+            return 1;
+        }
+        context.getSource().sendError(TextUtils.formattable("Couldn't find alias \"" + alias + "\""));
+        return 0;
+    }
+
+    /**
+     * Stops profiling an alias, keeping results for /alias profile report.
+     */
+    private static int profileStop(CommandContext<ServerCommandSource> context) {
+        String alias = context.getArgument("alias", String.class);
+        AliasedCommand cmd = AliasManager.ALIASES.get(alias);
+        if (cmd != null) {
+            if (!cmd.stopProfiling()) {
+                context.getSource().sendError(TextUtils.formattable("Alias \"" + alias + "\" is not being profiled"));
+                return 0;
+            }
+            context.getSource().sendFeedback(() -> cmd.getProfiler().report(alias, 10), false);
+            return 1;
+        }
+        context.getSource().sendError(TextUtils.formattable("Couldn't find alias \"" + alias + "\""));
+        return 0;
+    }
+
+    /**
+     * Outputs the hottest lines of the current or last profile.
+     */
+    private static int profileReport(CommandContext<ServerCommandSource> context, int lines) {
+        String alias = context.getArgument("alias", String.class);
+        AliasedCommand cmd = AliasManager.ALIASES.get(alias);
+        if (cmd != null) {
+            if (cmd.getProfiler() == null) {
+                context.getSource().sendError(TextUtils.formattable("Alias \"" + alias + "\" has not been profiled"));
+                return 0;
+            }
+            context.getSource().sendFeedback(() -> cmd.getProfiler().report(alias, lines), false);
+            return 1;
+        }
+        context.getSource().sendError(TextUtils.formattable("Couldn't find alias \"" + alias + "\""));
+        return 0;
+    }
+
     /**
      * Renames an existing alias, if not global.
      */
@@ -480,6 +540,10 @@ public class AliasCommand {
             if (cmd.hasArguments()) {
                 out.append("\nSyntax: ").append(cmd.getVerboseSyntax());
             }
+            if (cmd.isPure()) {
+                out.append(TextUtils.formattable("\nPure, cached results: ").append(TextUtils.formattable(cmd.getResultCache()
+                        .getHits() + " hits, " + cmd.getResultCache().getMisses() + " misses").formatted(Formatting.GREEN)));
+            }
             context.getSource().sendFeedback(() -> out, false);
             return 1;
         }
@@ -0,0 +1,294 @@
+package com.birblett.impl.command.alias;
+
+import com.birblett.accessor.command.CommandSourceModifier;
+import com.birblett.accessor.command.delay.AliasedCommandSource;
+import com.birblett.impl.command.alias.language.Frame;
+import com.birblett.impl.command.alias.language.Instruction;
+import com.birblett.impl.command.alias.language.Operator;
+import com.birblett.impl.config.ConfigOptions;
+import com.birblett.util.TextUtils;
+import com.mojang.brigadier.context.CommandContext;
+import net.minecraft.server.command.ServerCommandSource;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Interpreter state of a single alias execution. Aliases entered through [call] are pushed onto a stack of activations
+ * kept here rather than on the JVM stack, each with its own instructions, variable frame and address of the next
+ * instruction. Running it interprets instructions until the script ends, or until it yields, sleeps, or runs out of
+ * tick budget, after which {@link AliasScheduler} resumes the whole stack on a later tick.
+ */
+public class AliasContinuation {
+
+    private static long counter = 0;
+    final AliasedCommand alias;
+    final CommandContext<ServerCommandSource> context;
+    private final Deque<Activation> stack = new ArrayDeque<>();
+    private int result = 1;
+    // recursion depth of the source when run, nonzero if run from another alias' command line
+    private int baseDepth = 0;
+    int resumeTick = 0;
+    // preserves scheduling order for continuations resuming on the same tick
+    final long order = counter++;
+
+    AliasContinuation(AliasedCommand alias, CommandContext<ServerCommandSource> context, List<Instruction> instructions,
+                      Frame frame, AliasProfiler profiler, ResultCache.Key key) {
+        this.alias = alias;
+        this.context = context;
+        this.stack.push(new Activation(alias, instructions, frame, profiler, null, key));
+    }
+
+    /**
+     * Runs from the current address. Aliases run from other aliases' command lines are not budgeted, so that they
+     * finish before the line that ran them does, and for the same reason can't [yield] or [sleep].
+     * @param budgeted whether to suspend once the tick budget is used up
+     * @return command result, 1 if the script finished or was suspended and 0 if it returned early or failed
+     */
+    int run(boolean budgeted) {
+        AliasedCommandSource source = (AliasedCommandSource) this.context.getSource();
+        this.baseDepth = source.technicalToolbox$getRecursionCount();
+        source.technicalToolbox$AddToRecursionDepth(this.stack.size());
+        long start = System.nanoTime(), deadline = budgeted ? AliasScheduler.getDeadline(this.context.getSource()
+                .getServer(), start) : Long.MAX_VALUE;
+        try {
+            return this.interpret(source, deadline);
+        }
+        catch (RuntimeException e) {
+            // e.g. integer division by zero, which can't be folded away at compile time; nothing here is resumed
+            this.context.getSource().sendError(TextUtils.formattable("Error while running alias \"" + this.alias.getAlias()
+                    + "\": " + e.getMessage()));
+            this.unwind(source);
+            return 0;
+        }
+        finally {
+            if (budgeted) {
+                AliasScheduler.consume(System.nanoTime() - start);
+            }
+        }
+    }
+
+    private int interpret(AliasedCommandSource source, long deadline) {
+        Activation top = this.stack.peek();
+        // main loop for running instructions; opcode of -5 is a failed line, -4 is enter call, -3 is suspend, -2 is
+        // return, -1 is donothing, >=0 is an instruction index to jump to
+        while (ConfigOptions.ALIAS_INSTRUCTION_LIMIT.val() == -1 || source.technicalToolbox$getInstructionCount() <
+                ConfigOptions.ALIAS_INSTRUCTION_LIMIT.val()) {
+            if (top.address >= top.instructions.size()) {
+                if (this.pop(source, false)) {
+                    return this.result;
+                }
+                top = this.stack.peek();
+                continue;
+            }
+            if (source.technicalToolbox$getRecursionCount() >= ConfigOptions.ALIAS_MAX_RECURSION_DEPTH.val()) {
+                if (source.technicalToolbox$getRecursionCount() == ConfigOptions.ALIAS_MAX_RECURSION_DEPTH.val()) {
+                    this.context.getSource().sendError(TextUtils.formattable("Exceeded the max recursion depth of " +
+                            ConfigOptions.ALIAS_MAX_RECURSION_DEPTH.val()));
+                }
+                // aliases running this one from a command line share the source, so keep the depth past the limit for
+                // them to stop as well without repeating the error; the outermost one restores it
+                this.unwind(source);
+                source.technicalToolbox$AddToRecursionDepth((this.baseDepth == 0 ? 0 : ConfigOptions
+                        .ALIAS_MAX_RECURSION_DEPTH.val() + 1) - source.technicalToolbox$getRecursionCount());
+                return 0;
+            }
+            source.technicalToolbox$AddToInstructionCount(1);
+            int i = top.address;
+            Instruction instruction = top.instructions.get(i);
+            long start = top.profiler != null ? System.nanoTime() : 0;
+            int out = instruction.execute(top.alias, this.context, top.frame);
+            if (out == -4) {
+                out = this.enter((Instruction.Call) instruction, top, source);
+            }
+            if (out == -3 && this.baseDepth != 0) {
+                // the command line that ran this would carry on without it
+                this.context.getSource().sendError(TextUtils.formattable("Can't yield or sleep in an alias run from " +
+                        "another alias' command line, use [call] instead"));
+                out = -5;
+            }
+            if (top.profiler != null) {
+                top.profiler.record(i, System.nanoTime() - start);
+            }
+            if (out == -4) {
+                top = this.stack.peek();
+                continue;
+            }
+            if (out == -5) {
+                // the error it sent is a side effect, so nothing on the stack can be cached
+                for (Activation activation : this.stack) {
+                    activation.key = null;
+                }
+            }
+            if (out == -2 || out == -5) {
+                if (this.pop(source, true)) {
+                    return this.result;
+                }
+                top = this.stack.peek();
+                continue;
+            }
+            top.address = out >= 0 ? out : i + 1;
+            if (out == -3) {
+                return this.suspend(source, ((Instruction.Sleep) instruction).getTicks(top.frame));
+            }
+            if (deadline != Long.MAX_VALUE && top.address < top.instructions.size() && System.nanoTime() >= deadline) {
+                return this.suspend(source, 1);
+            }
+        }
+        this.context.getSource().sendError(TextUtils.formattable("Exceeded the instruction limit of " +
+                ConfigOptions.ALIAS_INSTRUCTION_LIMIT.val()));
+        this.unwind(source);
+        return 0;
+    }
+
+    /**
+     * Enters the target of a [call]. Self-calls marked as tail calls reuse the current activation with the new frame
+     * instead of growing the stack, as long as what ends up being returned stays the same.
+     * @return -4 if entered, -5 if the call failed
+     */
+    private int enter(Instruction.Call call, Activation top, AliasedCommandSource source) {
+        Frame frame = call.enter(this.context, top.frame);
+        if (frame == null) {
+            return -5;
+        }
+        AliasedCommand target = call.getTarget();
+        ResultCache.Key key = target.getResultKey(frame);
+        if (key != null) {
+            ResultCache.Result cached = target.getResultCache().get(key);
+            if (cached != null) {
+                call.leave(top.frame, cached.returned() ? cached.value() : null);
+                top.address++;
+                return -4;
+            }
+        }
+        if (call.isTailCall() && target == top.alias) {
+            int returnMode = Instruction.Call.composeReturnModes(top.returnMode, call.getTailReturnMode());
+            if (returnMode != Instruction.Call.RETURN_INVALID) {
+                top.instructions = target.getProgram();
+                top.frame = frame;
+                top.address = 0;
+                top.returnMode = returnMode;
+                return -4;
+            }
+        }
+        this.stack.push(new Activation(target, target.getProgram(), frame, target.getRunningProfiler(), call, key));
+        source.technicalToolbox$AddToRecursionDepth(1);
+        return -4;
+    }
+
+    /**
+     * Leaves the top activation, passing its return value to its caller, or to the command source if it was the last.
+     * @param early whether it ended through [return] or a failed line rather than by running out of instructions
+     * @return whether the stack is now empty
+     */
+    private boolean pop(AliasedCommandSource source, boolean early) {
+        Activation done = this.stack.pop();
+        source.technicalToolbox$AddToRecursionDepth(-1);
+        boolean returned = done.frame.hasReturned();
+        Operator value = done.frame.getReturnValue();
+        switch (done.returnMode) {
+            case Instruction.Call.RETURN_AS_IS -> {}
+            case Instruction.Call.RETURN_NOTHING -> returned = false;
+            case Instruction.Call.RETURN_NULL -> {
+                returned = true;
+                value = null;
+            }
+            default -> {
+                returned = true;
+                value = Instruction.Call.castReturnValue(value, done.returnMode);
+            }
+        }
+        // after a tail call, the result is what the frame it replaced would have ended with
+        int result = switch (done.returnMode) {
+            case Instruction.Call.RETURN_AS_IS -> early ? 0 : 1;
+            case Instruction.Call.RETURN_NOTHING -> 1;
+            default -> 0;
+        };
+        // a failed line ends it early too, but without a return value, and isn't cached
+        if (done.key != null && (!early || done.frame.hasReturned())) {
+            done.alias.getResultCache().put(done.key, new ResultCache.Result(returned, value, result));
+        }
+        if (this.stack.isEmpty()) {
+            if (returned) {
+                ((CommandSourceModifier) this.context.getSource()).technicalToolbox$setReturnValue(value);
+            }
+            this.result = result;
+            return true;
+        }
+        Activation caller = this.stack.peek();
+        done.call.leave(caller.frame, returned ? value : null);
+        caller.address++;
+        return false;
+    }
+
+    /**
+     * Leaves the call stack and schedules the rest of the script.
+     */
+    private int suspend(AliasedCommandSource source, long ticks) {
+        source.technicalToolbox$AddToRecursionDepth(-this.stack.size());
+        AliasScheduler.schedule(this, this.context.getSource().getServer(), ticks);
+        return 1;
+    }
+
+    /**
+     * Leaves the call stack without returning to anything, after the script failed.
+     */
+    private void unwind(AliasedCommandSource source) {
+        source.technicalToolbox$AddToRecursionDepth(-this.stack.size());
+        this.stack.clear();
+    }
+
+    /**
+     * Resumes from the scheduler. Each resumed slice starts with fresh instruction and recursion counts, since
+     * whatever ran before it on the same source has long since finished.
+     */
+    void resume() {
+        AliasedCommandSource source = (AliasedCommandSource) this.context.getSource();
+        source.technicalToolbox$AddToInstructionCount(-source.technicalToolbox$getInstructionCount());
+        source.technicalToolbox$AddToRecursionDepth(-source.technicalToolbox$getRecursionCount());
+        this.run(true);
+    }
+
+    /**
+     * @return whether an alias is anywhere on the call stack
+     */
+    boolean isRunning(AliasedCommand alias) {
+        for (Activation activation : this.stack) {
+            if (activation.alias == alias) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A single alias invocation on the call stack.
+     */
+    private static class Activation {
+
+        private final AliasedCommand alias;
+        private final AliasProfiler profiler;
+        // the [call] this was entered from, null at the bottom of the stack
+        private final Instruction.Call call;
+        private List<Instruction> instructions;
+        private Frame frame;
+        private int address = 0;
+        // how the return value is converted on leaving, changed when tail calls are folded into this activation
+        private int returnMode = Instruction.Call.RETURN_AS_IS;
+        // key to cache the result under if the alias is pure, kept through tail calls since the result stays the same
+        private ResultCache.Key key;
+
+        private Activation(AliasedCommand alias, List<Instruction> instructions, Frame frame, AliasProfiler profiler,
+                           Instruction.Call call, ResultCache.Key key) {
+            this.alias = alias;
+            this.instructions = instructions;
+            this.frame = frame;
+            this.profiler = profiler;
+            this.call = call;
+            this.key = key;
+        }
+
+    }
+
+}
@@ -3,7 +3,10 @@ package com.birblett.impl.command.alias;
 import com.birblett.TechnicalToolbox;
 import com.birblett.impl.config.ConfigOptions;
 import com.birblett.util.ServerUtil;
+import com.mojang.brigadier.CommandDispatcher;
 import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.util.Util;
 import org.apache.commons.io.FileUtils;
 
 import java.io.File;
@@ -11,19 +14,26 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * Handles writing and reading of configuration options, with methods called on server start and close
  */
 public class AliasManager {
 
-    public static final Map<String, AliasedCommand> ALIASES = new HashMap<>();
+    public static final AliasRegistry ALIASES = new AliasRegistry();
     public static final String ALIAS_PATH = "aliases";
     public static final String RECYCLE_PATH = "aliases/recycle";
+    public static final String COMPILED_PATH = "aliases_compiled";
 
     public AliasManager() {
     }
@@ -33,19 +43,34 @@ public class AliasManager {
      * @param server the server being opened
      */
     public void onServerOpen(MinecraftServer server) {
-        for (String key : AliasManager.ALIASES.keySet()) {
-            AliasManager.ALIASES.get(key).deregister(server, false);
+        for (AliasedCommand aliasedCommand : AliasManager.ALIASES.values()) {
+            aliasedCommand.deregister(server, false);
         }
         AliasManager.ALIASES.clear();
+        this.loadAliases(server, server.getCommandSource().getDispatcher());
+    }
+
+    /**
+     * Reads and compiles all aliases from storage, then registers them on the calling thread.
+     */
+    public void loadAliases(MinecraftServer server, CommandDispatcher<ServerCommandSource> dispatcher) {
         this.readAliases(server);
+        int failed = 0;
         for (AliasedCommand aliasedCommand : AliasManager.ALIASES.values()) {
             try {
-                aliasedCommand.register(server.getCommandSource().getDispatcher());
+                if (!aliasedCommand.registerPrepared(dispatcher)) {
+                    failed++;
+                }
             }
             catch (Exception e) {
-                TechnicalToolbox.error("Something went wrong with compiling alias {}", aliasedCommand.getAlias());
+                TechnicalToolbox.error("Something went wrong with registering alias {}", aliasedCommand.getAlias(), e);
+                failed++;
             }
         }
+        if (failed > 0) {
+            TechnicalToolbox.warn("{} alias{} failed to compile or register and will not be available", failed, failed > 1 ?
+                    "es" : "");
+        }
     }
 
     /**
@@ -53,26 +78,25 @@ public class AliasManager {
      */
     public void onServerClose(MinecraftServer server) {
         this.writeAliases(server);
-        for (Object key : AliasManager.ALIASES.keySet().toArray()) {
-            AliasManager.ALIASES.get((String) key).deregister(server, false);
+        for (AliasedCommand aliasedCommand : AliasManager.ALIASES.values()) {
+            aliasedCommand.deregister(server, false);
         }
         AliasManager.ALIASES.clear();
+        AliasScheduler.clear();
     }
 
     /**
-     * Read all aliases from storage and compile + register them.
+     * Read all aliases from storage and compile them. Files are read and compiled on the worker pool, then added in
+     * file order; local aliases are only read once globals are in, since globals take priority. Aliases unchanged since
+     * they were last compiled are read from {@link AliasCache} instead.
      */
     public void readAliases(MinecraftServer server) {
         File global = ServerUtil.getGlobalToolboxPath(server, ALIAS_PATH).toFile();
         ServerUtil.createDirectoryIfNotPresent(global);
-        int globalCount = 0;
         File[] globalDir = global.listFiles();
         if (globalDir != null) {
-            for (File f : globalDir) {
-                if (f.getPath().endsWith(".alias") && AliasedCommand.readFromFile(f.toPath(), true)) {
-                    globalCount++;
-                }
-            }
+            int globalCount = AliasManager.readAll(globalDir, ServerUtil.getGlobalToolboxPath(server, COMPILED_PATH).toFile(),
+                    true);
             if (globalCount > 0) {
                 TechnicalToolbox.log("Loaded " + globalCount + " global aliases");
             }
@@ -84,14 +108,7 @@ public class AliasManager {
         }
         File[] files;
         if ((files = directory.listFiles()) != null) {
-            int count = 0;
-            for (File f : files) {
-                String name = f.getName().substring(0, f.getName().length() - 6);
-                if (f.getPath().endsWith(".alias") && !(AliasManager.ALIASES.containsKey(name) && AliasManager.ALIASES.get(name).global) &&
-                        AliasedCommand.readFromFile(f.toPath(), false)) {
-                    count++;
-                }
-            }
+            int count = AliasManager.readAll(files, ServerUtil.getToolboxPath(server, COMPILED_PATH).toFile(), false);
             TechnicalToolbox.log("Loaded " + count + " aliases");
         }
         else {
@@ -99,6 +116,64 @@ public class AliasManager {
         }
     }
 
+    /**
+     * Reads and prepares alias files in parallel. Workers only read {@link AliasManager#ALIASES}, and the aliases they
+     * prepare are published together once all of them are done.
+     * @param cacheDirectory directory of compiled alias cache files for these files
+     * @return number of aliases loaded
+     */
+    private static int readAll(File[] files, File cacheDirectory, boolean global) {
+        boolean lazy = ConfigOptions.ALIAS_LAZY_COMPILE.val();
+        boolean cached = ServerUtil.createDirectoryIfNotPresent(cacheDirectory);
+        List<CompletableFuture<AliasedCommand>> futures = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        for (File f : files) {
+            String name = f.getName().substring(0, Math.max(0, f.getName().length() - 6));
+            if (f.getPath().endsWith(".alias") && !AliasManager.ALIASES.isGlobal(name)) {
+                names.add(name);
+                Path cache = cacheDirectory.toPath().resolve(name + ".bin");
+                futures.add(CompletableFuture.supplyAsync(() -> {
+                    byte[] hash = cached ? AliasCache.hash(f.toPath()) : null;
+                    AliasedCommand aliasedCommand = AliasCache.load(cache, hash, global);
+                    if (aliasedCommand != null) {
+                        return aliasedCommand;
+                    }
+                    aliasedCommand = AliasedCommand.parseFile(f.toPath(), global);
+                    if (aliasedCommand != null && aliasedCommand.prepare(lazy) && !lazy) {
+                        AliasCache.save(aliasedCommand, cache, hash);
+                    }
+                    return aliasedCommand;
+                }, Util.getMainWorkerExecutor()));
+            }
+        }
+        // drop cache files of aliases that no longer exist
+        File[] stale = cacheDirectory.listFiles((dir, file) -> file.endsWith(".bin") && !names.contains(file.substring(0,
+                file.length() - 4)));
+        if (stale != null) {
+            for (File file : stale) {
+                if (!file.delete()) {
+                    TechnicalToolbox.warn("Couldn't delete stale compiled alias cache {}", file);
+                }
+            }
+        }
+        Map<String, AliasedCommand> prepared = new LinkedHashMap<>();
+        for (CompletableFuture<AliasedCommand> future : futures) {
+            AliasedCommand aliasedCommand;
+            try {
+                aliasedCommand = future.join();
+            }
+            catch (CompletionException e) {
+                TechnicalToolbox.error("Something went wrong reading alias: {}", e.getCause().toString());
+                continue;
+            }
+            if (aliasedCommand != null) {
+                prepared.put(aliasedCommand.getAlias(), aliasedCommand);
+            }
+        }
+        AliasManager.ALIASES.putAll(prepared);
+        return prepared.size();
+    }
+
     /**
      * Writes all aliases to storage.
      */
@@ -115,7 +190,7 @@ public class AliasManager {
             int removedCount = 0;
             for (File file : FileUtils.listFiles(directory, new String[]{"alias"}, false)) {
                 String name = file.getName().substring(0, file.getName().length() - 6);
-                if (!AliasManager.ALIASES.containsKey(name) || AliasManager.ALIASES.get(name).global) {
+                if (!AliasManager.ALIASES.containsKey(name) || AliasManager.ALIASES.isGlobal(name)) {
                     removedCount++;
                     Files.move(file.toPath(), recycle.toPath().resolve(file.getName()), StandardCopyOption.REPLACE_EXISTING);
                 }
@@ -138,10 +213,10 @@ public class AliasManager {
             TechnicalToolbox.error("Failed to clean alias directory, please report");
         }
         int count = 0;
-        for (String key : AliasManager.ALIASES.keySet()) {
-            if (!AliasManager.ALIASES.get(key).global) {
-                Path path = ServerUtil.getToolboxPath(server, ALIAS_PATH + "/" + key + ".alias");
-                if (AliasManager.ALIASES.get(key).writeToFile(path)) {
+        for (AliasedCommand aliasedCommand : AliasManager.ALIASES.values()) {
+            if (!aliasedCommand.global) {
+                Path path = ServerUtil.getToolboxPath(server, ALIAS_PATH + "/" + aliasedCommand.getAlias() + ".alias");
+                if (aliasedCommand.writeToFile(path)) {
                     count++;
                 }
             }
@@ -0,0 +1,87 @@
+package com.birblett.impl.command.alias;
+
+import com.birblett.util.TextUtils;
+import net.minecraft.text.MutableText;
+import net.minecraft.util.Formatting;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Per-instruction hit counts and cumulative time for a single alias, reported per source line. Times are inclusive, so
+ * a command line's time covers its dispatcher call along with any aliases it runs.
+ */
+public class AliasProfiler {
+
+    private final int[] lines;
+    private final String[] source;
+    private final long[] hits;
+    private final long[] nanos;
+    private final long startTime = System.nanoTime();
+    private long stopTime = -1;
+
+    /**
+     * @param lines index of the source line each instruction of the running program was compiled from
+     * @param source source lines the program was compiled from
+     */
+    public AliasProfiler(int[] lines, List<String> source) {
+        this.lines = lines;
+        this.source = source.toArray(new String[0]);
+        this.hits = new long[lines.length];
+        this.nanos = new long[lines.length];
+    }
+
+    public void record(int address, long nanos) {
+        if (address < this.hits.length) {
+            this.hits[address]++;
+            this.nanos[address] += nanos;
+        }
+    }
+
+    public void stop() {
+        this.stopTime = System.nanoTime();
+    }
+
+    public boolean isRunning() {
+        return this.stopTime < 0;
+    }
+
+    /**
+     * A line that compiles to several instructions, i.e. a compound condition, runs as many times as the instruction of
+     * it that runs most.
+     * @param limit maximum number of rows to include
+     * @return table of the source lines with the highest total time
+     */
+    public MutableText report(String alias, int limit) {
+        long[] lineHits = new long[this.source.length], lineNanos = new long[this.source.length];
+        for (int i = 0; i < this.lines.length; i++) {
+            lineHits[this.lines[i]] = Math.max(lineHits[this.lines[i]], this.hits[i]);
+            lineNanos[this.lines[i]] += this.nanos[i];
+        }
+        long total = Arrays.stream(this.nanos).sum();
+        long elapsed = (this.isRunning() ? System.nanoTime() : this.stopTime) - this.startTime;
+        MutableText text = TextUtils.formattable("Profile for ").append(TextUtils.formattable(alias).formatted(Formatting.GREEN))
+                .append(TextUtils.formattable(String.format(" (%.1fms in alias over %.1fs%s):", total / 1e6, elapsed / 1e9,
+                        this.isRunning() ? ", running" : "")));
+        Integer[] order = new Integer[this.source.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> -lineNanos[i]));
+        for (int n = 0; n < Math.min(limit, order.length); n++) {
+            int i = order[n];
+            if (lineHits[i] == 0) {
+                break;
+            }
+            text.append(TextUtils.formattable(String.format("\n  %3d ", i + 1)).formatted(Formatting.GRAY))
+                    .append(TextUtils.formattable(String.format("%5.1f%% ", total == 0 ? 0 : 100.0 * lineNanos[i] / total))
+                            .formatted(Formatting.YELLOW))
+                    .append(TextUtils.formattable(String.format("%8.2fms %7dx %8.1f\u00b5s ", lineNanos[i] / 1e6, lineHits[i],
+                            lineNanos[i] / 1e3 / lineHits[i])))
+                    .append(TextUtils.formattable(this.source[i].strip()).formatted(Formatting.WHITE));
+        }
+        return text;
+    }
+
+}
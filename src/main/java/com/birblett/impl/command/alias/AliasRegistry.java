@@ -0,0 +1,138 @@
+package com.birblett.impl.command.alias;
+
+import com.birblett.util.PrefixIndex;
+
+import java.util.AbstractMap;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+/**
+ * Registered aliases by name. Every change publishes a new immutable snapshot with a single atomic swap, so reads never
+ * lock or see a change half applied, and iterating is safe while aliases are added or removed from any thread, i.e.
+ * compile workers. Changes copy the whole map, which is fine since they are rare next to reads, and are serialized so
+ * the name index for suggestions stays in step with the snapshots.
+ */
+public class AliasRegistry extends AbstractMap<String, AliasedCommand> {
+
+    private final AtomicReference<Map<String, AliasedCommand>> snapshot = new AtomicReference<>(Collections.emptyMap());
+    private final PrefixIndex names = new PrefixIndex();
+
+    /**
+     * @return the current aliases, which won't change; use this to read more than one alias consistently
+     */
+    public Map<String, AliasedCommand> snapshot() {
+        return this.snapshot.get();
+    }
+
+    /**
+     * @return index of registered alias names, for suggesting them
+     */
+    public PrefixIndex names() {
+        return this.names;
+    }
+
+    /**
+     * @return whether a global alias of this name is registered, which local aliases can't replace
+     */
+    public boolean isGlobal(String name) {
+        AliasedCommand aliasedCommand = this.snapshot.get().get(name);
+        return aliasedCommand != null && aliasedCommand.global;
+    }
+
+    @Override
+    public AliasedCommand get(Object key) {
+        return this.snapshot.get().get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return this.snapshot.get().containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return this.snapshot.get().size();
+    }
+
+    @Override
+    public synchronized AliasedCommand put(String key, AliasedCommand value) {
+        this.names.add(key);
+        return this.update(aliases -> AliasRegistry.with(aliases, key, value)).get(key);
+    }
+
+    @Override
+    public synchronized AliasedCommand putIfAbsent(String key, AliasedCommand value) {
+        this.names.add(key);
+        return this.update(aliases -> aliases.containsKey(key) ? aliases : AliasRegistry.with(aliases, key, value)).get(
+                key);
+    }
+
+    @Override
+    public synchronized void putAll(Map<? extends String, ? extends AliasedCommand> map) {
+        map.keySet().forEach(this.names::add);
+        this.update(aliases -> {
+            Map<String, AliasedCommand> copy = new HashMap<>(aliases);
+            copy.putAll(map);
+            return Collections.unmodifiableMap(copy);
+        });
+    }
+
+    @Override
+    public synchronized AliasedCommand remove(Object key) {
+        if (key instanceof String name) {
+            this.names.remove(name);
+        }
+        return this.update(aliases -> {
+            if (!aliases.containsKey(key)) {
+                return aliases;
+            }
+            Map<String, AliasedCommand> copy = new HashMap<>(aliases);
+            copy.remove(key);
+            return Collections.unmodifiableMap(copy);
+        }).get(key);
+    }
+
+    @Override
+    public synchronized void clear() {
+        this.names.clear();
+        this.snapshot.set(Collections.emptyMap());
+    }
+
+    /**
+     * Views of the snapshot current when called, so they don't change while they're iterated and can't be modified.
+     */
+    @Override
+    public Set<Entry<String, AliasedCommand>> entrySet() {
+        return this.snapshot.get().entrySet();
+    }
+
+    @Override
+    public Set<String> keySet() {
+        return this.snapshot.get().keySet();
+    }
+
+    @Override
+    public Collection<AliasedCommand> values() {
+        return this.snapshot.get().values();
+    }
+
+    /**
+     * @return the snapshot the change was applied to
+     */
+    private Map<String, AliasedCommand> update(UnaryOperator<Map<String, AliasedCommand>> change) {
+        return this.snapshot.getAndUpdate(change);
+    }
+
+    private static Map<String, AliasedCommand> with(Map<String, AliasedCommand> aliases, String key, AliasedCommand
+            value) {
+        Map<String, AliasedCommand> copy = new HashMap<>(aliases);
+        copy.put(key, value);
+        return Collections.unmodifiableMap(copy);
+    }
+
+}
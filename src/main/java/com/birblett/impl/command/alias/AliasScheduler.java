@@ -0,0 +1,75 @@
+package com.birblett.impl.command.alias;
+
+import com.birblett.impl.config.ConfigOptions;
+import net.minecraft.server.MinecraftServer;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * Resumes suspended alias executions on later ticks. All budgeted alias execution within a tick shares a single time
+ * budget of {@link ConfigOptions#ALIAS_TICK_BUDGET} microseconds; once it is used up, the remaining executions wait for
+ * the next tick.
+ */
+public class AliasScheduler {
+
+    private static final PriorityQueue<AliasContinuation> SUSPENDED = new PriorityQueue<>(Comparator
+            .comparingInt((AliasContinuation c) -> c.resumeTick).thenComparingLong(c -> c.order));
+    private static int budgetTick = -1;
+    private static long usedNanos = 0;
+
+    /**
+     * Called at the end of every server tick, resumes executions that are due for as long as there is budget left. At
+     * least one execution is resumed every tick, and each runs at least one instruction, so everything progresses even
+     * if the budget is used up elsewhere.
+     */
+    public static void tick(MinecraftServer server) {
+        boolean first = true;
+        while (!SUSPENDED.isEmpty() && SUSPENDED.peek().resumeTick <= server.getTicks() && (AliasScheduler.hasBudget(server)
+                || first)) {
+            SUSPENDED.poll().resume();
+            first = false;
+        }
+    }
+
+    static void schedule(AliasContinuation continuation, MinecraftServer server, long ticks) {
+        continuation.resumeTick = (int) Math.min(Integer.MAX_VALUE, server.getTicks() + Math.max(1, ticks));
+        SUSPENDED.add(continuation);
+    }
+
+    /**
+     * Drops all suspended executions that have an alias on their call stack, i.e. when it is removed.
+     */
+    public static void cancel(AliasedCommand alias) {
+        SUSPENDED.removeIf(continuation -> continuation.isRunning(alias));
+    }
+
+    public static void clear() {
+        SUSPENDED.clear();
+    }
+
+    /**
+     * @param start time the caller starts running at
+     * @return time at which the caller should suspend, or {@link Long#MAX_VALUE} if execution isn't budgeted
+     */
+    static long getDeadline(MinecraftServer server, long start) {
+        if (ConfigOptions.ALIAS_TICK_BUDGET.val() < 0) {
+            return Long.MAX_VALUE;
+        }
+        AliasScheduler.hasBudget(server);
+        return start + ConfigOptions.ALIAS_TICK_BUDGET.val() * 1000L - usedNanos;
+    }
+
+    static void consume(long nanos) {
+        usedNanos += nanos;
+    }
+
+    private static boolean hasBudget(MinecraftServer server) {
+        if (budgetTick != server.getTicks()) {
+            budgetTick = server.getTicks();
+            usedNanos = 0;
+        }
+        return ConfigOptions.ALIAS_TICK_BUDGET.val() < 0 || usedNanos < ConfigOptions.ALIAS_TICK_BUDGET.val() * 1000L;
+    }
+
+}
@@ -4,14 +4,18 @@ import com.birblett.TechnicalToolbox;
 import com.birblett.accessor.command.CommandSourceModifier;
 import com.birblett.accessor.command.delay.AliasedCommandSource;
 import com.birblett.impl.command.alias.language.AliasConstants;
+import com.birblett.impl.command.alias.language.Frame;
 import com.birblett.impl.command.alias.language.Instruction;
+import com.birblett.impl.command.alias.language.Optimizer;
+import com.birblett.impl.command.alias.language.ProgramCodec;
+import com.birblett.impl.command.alias.language.SelectionArgumentType;
 import com.birblett.impl.command.alias.language.Variable;
 import com.birblett.impl.config.ConfigOptions;
 import com.birblett.util.ServerUtil;
 import com.birblett.util.TextUtils;
 import com.mojang.brigadier.CommandDispatcher;
 import com.mojang.brigadier.builder.ArgumentBuilder;
-import com.mojang.brigadier.builder.LiteralArgumentBuilder;
+import com.mojang.brigadier.builder.RequiredArgumentBuilder;
 import com.mojang.brigadier.context.CommandContext;
 import com.mojang.brigadier.exceptions.CommandSyntaxException;
 import com.mojang.brigadier.suggestion.SuggestionsBuilder;
@@ -23,10 +27,13 @@ import net.minecraft.util.Formatting;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.DataOutput;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -40,15 +47,72 @@ public class AliasedCommand {
     private String alias;
     private final List<String> commands = new ArrayList<>();
     private final List<Instruction> instructions = new ArrayList<>();
+    // index of the line each instruction was compiled from
+    private final List<Integer> instructionLines = new ArrayList<>();
+    private int frameSize = 0;
+    // last successfully built instructions, which are what actually runs, and the lines they were compiled from
+    private List<Instruction> program = List.of();
+    private int[] programLines = new int[0];
+    private List<String> programSource = List.of();
+    private int programFrameSize = 0;
+    private int unoptimizedSize = 0;
+    // output of the last successful compile before optimization, kept for incremental recompilation
+    private final List<String> compiledLines = new ArrayList<>();
+    private final List<Instruction> compiled = new ArrayList<>();
+    private final List<Integer> compiledInstructionLines = new ArrayList<>();
+    private final List<Checkpoint> checkpoints = new ArrayList<>();
+    private String compiledSignature = null;
+    private String registeredSignature = null;
+    private int registeredPermission = 0;
     private final LinkedHashMap<String, Variable.Definition> argumentDefinitions = new LinkedHashMap<>();
+    private final ParseCache parseCache = new ParseCache();
+    private final ResultCache resultCache = new ResultCache();
+    // whether the last build runs no commands and doesn't sleep or fetch, in which case it is pure if all it calls is
+    private boolean pureBody = false;
+    private Set<String> callTargets = Set.of();
+    private boolean pure = false;
+    // bumped from compile workers too while aliases load in parallel
+    private static final AtomicInteger programVersion = new AtomicInteger();
+    private static long purityVersion = -1;
+    private AliasProfiler profiler = null;
+    private boolean compilePending = false;
+    private boolean prepared = false;
     private int permission;
     private boolean silent;
     public final boolean global;
     private static final Pattern SAVED_ARGS = Pattern.compile("\\{\\$[^:]+(:[^}]+)?}");
     private static final Pattern STATEMENT = Pattern.compile("\\[.*]");
     private static final Pattern STATEMENT_BEGIN = Pattern.compile("\\[[^ ]+");
+    private static final Pattern INDEXED = Pattern.compile("([a-zA-Z_][a-zA-Z0-9_]*) *\\[(.*)]");
+    private static final Pattern FOR = Pattern.compile("([a-zA-Z_][a-zA-Z0-9_]*) *= *(.+?) +to +(.+?)(?: +step +(.+))?");
+    private static final Pattern CALL = Pattern.compile("(?:([^=]+?) *= *)?([^\\s(=]+) *\\((.*)\\)");
     public String status = null;
 
+    /**
+     * Compiler state at the start of a top-level line, where no control flow blocks are open.
+     * @param line line index
+     * @param address number of instructions compiled before this line
+     * @param scope top-level variables in scope
+     * @param frameSize frame size required by the instructions before this line
+     */
+    private record Checkpoint(int line, int address, LinkedHashMap<String, Variable.Definition> scope, int frameSize) {
+
+        static boolean sameScope(LinkedHashMap<String, Variable.Definition> a, LinkedHashMap<String, Variable.Definition> b) {
+            if (a.size() != b.size()) {
+                return false;
+            }
+            for (Variable.Definition def : a.values()) {
+                Variable.Definition other = b.get(def.name);
+                if (other == null || other.slot != def.slot || !other.typeName.equals(def.typeName) || !Arrays.equals(other
+                        .args, def.args)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+    }
+
     public AliasedCommand(String alias, String command, CommandDispatcher<ServerCommandSource> dispatcher) {
         this.global = false;
         this.alias = alias;
@@ -77,7 +141,6 @@ public class AliasedCommand {
         }
         this.permission = permission;
         this.silent = silent;
-        AliasManager.ALIASES.put(this.alias, this);
     }
 
     public String getAlias() {
@@ -106,12 +169,91 @@ public class AliasedCommand {
      * @return false if it fails to compile
      */
     private boolean compile() {
-        this.instructions.clear();
+        if (this.compileLines()) {
+            this.compiledLines.clear();
+            this.compiledLines.addAll(this.commands);
+            this.compiled.clear();
+            this.compiled.addAll(this.instructions);
+            this.compiledInstructionLines.clear();
+            this.compiledInstructionLines.addAll(this.instructionLines);
+            this.compiledSignature = this.argumentSignature();
+            return true;
+        }
+        this.compiledSignature = null;
+        this.checkpoints.clear();
+        return false;
+    }
+
+    /**
+     * Compiles {@link AliasedCommand#commands} into {@link AliasedCommand#instructions}. Output from the last successful
+     * compile is reused where possible: compilation resumes from the last top-level line before the first edited line,
+     * and once past the edit, the old output for identical remaining lines is reused if those lines start with the same
+     * variables in scope.
+     */
+    private boolean compileLines() {
         Stack<Instruction> controlFlowStack = new Stack<>();
         List<LinkedHashMap<String, Variable.Definition>> scope = new ArrayList<>();
-        scope.add(new LinkedHashMap<>(this.argumentDefinitions));
-        int address = 0, depth = 0;
-        for (int i = 0; i < this.commands.size(); i++) {
+        List<Checkpoint> checkpoints = new ArrayList<>();
+        Checkpoint resume = null;
+        int suffix = 0, previousFrameSize = this.frameSize;
+        if (this.argumentSignature().equals(this.compiledSignature)) {
+            int prefix = 0, max = Math.min(this.commands.size(), this.compiledLines.size());
+            while (prefix < max && this.commands.get(prefix).equals(this.compiledLines.get(prefix))) {
+                prefix++;
+            }
+            while (suffix < max - prefix && this.commands.get(this.commands.size() - 1 - suffix).equals(this.compiledLines
+                    .get(this.compiledLines.size() - 1 - suffix))) {
+                suffix++;
+            }
+            for (Checkpoint checkpoint : this.checkpoints) {
+                if (checkpoint.line > prefix) {
+                    break;
+                }
+                resume = checkpoint;
+            }
+        }
+        this.instructions.clear();
+        this.instructionLines.clear();
+        if (resume != null) {
+            this.instructions.addAll(this.compiled.subList(0, resume.address));
+            this.instructionLines.addAll(this.compiledInstructionLines.subList(0, resume.address));
+            for (Checkpoint checkpoint : this.checkpoints) {
+                if (checkpoint.line >= resume.line) {
+                    break;
+                }
+                checkpoints.add(checkpoint);
+            }
+            scope.add(new LinkedHashMap<>(resume.scope));
+            this.frameSize = resume.frameSize;
+        }
+        else {
+            // arguments always occupy the first frame slots, in declaration order
+            LinkedHashMap<String, Variable.Definition> arguments = new LinkedHashMap<>();
+            for (Variable.Definition def : this.argumentDefinitions.values()) {
+                String option;
+                if ("selection".equals(def.typeName) && (option = SelectionArgumentType
+                        .findUntypeableOption(def.args)) != null) {
+                    TechnicalToolbox.error("Failed to compile /{} - argument {}: selection option \"{}\" isn't a single " +
+                            "word", this.alias, def.name, option);
+                    this.status = "Argument " + def.name + ": selection option \"" + option + "\" isn't a single word";
+                    return false;
+                }
+                arguments.put(def.name, new Variable.Definition(def.name, def.typeName, def.args, arguments.size()));
+            }
+            scope.add(arguments);
+            this.frameSize = arguments.size();
+        }
+        int address = this.instructions.size(), depth = 0;
+        for (int i = resume != null ? resume.line : 0; i < this.commands.size(); i++) {
+            if (controlFlowStack.isEmpty()) {
+                Checkpoint checkpoint = new Checkpoint(i, address, new LinkedHashMap<>(scope.getFirst()), this.frameSize);
+                if (this.commands.size() - i <= suffix && this.reuseSuffix(checkpoint, checkpoints, previousFrameSize)) {
+                    this.checkpoints.clear();
+                    this.checkpoints.addAll(checkpoints);
+                    return true;
+                }
+                checkpoints.add(checkpoint);
+            }
             String s = this.commands.get(i);
             if (!s.isEmpty()) {
                 String cmd = s.strip(), c;
@@ -132,22 +274,55 @@ public class AliasedCommand {
                                 if (instr.length != 2) {
                                     return this.compileError(i, "assignment must be of form [let var = (expression)]");
                                 }
+                                // assigning to an element of a list or map
+                                Matcher indexed = INDEXED.matcher(instr[0].strip());
+                                if (indexed.matches()) {
+                                    Instruction.Store store = new Instruction.Store(indexed.group(1), indexed.group(2), instr[1], scope);
+                                    if (!store.valid) {
+                                        return this.compileError(i, store.err);
+                                    }
+                                    this.instructions.add(store);
+                                    break;
+                                }
                                 Instruction.Let e = new Instruction.Let(instr[0].strip(), instr[1], scope);
                                 if (!e.valid) {
                                     return this.compileError(i, e.err);
                                 }
                                 this.instructions.add(e);
                             }
+                            // [list] and [map] declare a local collection with a fixed element type, starting out empty
+                            case "list", "map" -> {
+                                String[] instr = c.substring(1, c.length() - 1).replaceFirst(ctrl, "").strip().split(" +");
+                                if (instr.length != 2) {
+                                    return this.compileError(i, ctrl + " should be of form [" + ctrl + " type <var>]");
+                                }
+                                Instruction.Declare instruction = new Instruction.Declare(ctrl, instr[0], instr[1], scope);
+                                if (!instruction.valid) {
+                                    return this.compileError(i, instruction.err);
+                                }
+                                this.instructions.add(instruction);
+                            }
+                            case "append" -> {
+                                String[] instr = c.substring(1, c.length() - 1).replaceFirst("append", "").strip().split(" ", 2);
+                                if (instr.length != 2) {
+                                    return this.compileError(i, "append should be of form [append <list> (expression)]");
+                                }
+                                Instruction.Store instruction = new Instruction.Store(instr[0], null, instr[1], scope);
+                                if (!instruction.valid) {
+                                    return this.compileError(i, instruction.err);
+                                }
+                                this.instructions.add(instruction);
+                            }
                             // tests a condition; if it fails jump to the next elif/else
                             case "if" -> {
                                 depth++;
                                 scope.add(new LinkedHashMap<>());
                                 String instr =  c.substring(1, c.length() - 1).replaceFirst("if", "").strip();
-                                Instruction.If instruction = new Instruction.If(instr, scope);
+                                Instruction.If instruction = new Instruction.If(address, instr, scope);
                                 if (!instruction.valid) {
                                     return this.compileError(i, instruction.err);
                                 }
-                                this.instructions.add(instruction);
+                                this.instructions.addAll(instruction.getChain());
                                 controlFlowStack.add(instruction);
                             }
                             // sets previous if/elif conditional jump to the current address and creates an IfJump instruction, which will
@@ -155,17 +330,17 @@ public class AliasedCommand {
                             case "elif" -> {
                                 if (!controlFlowStack.isEmpty() && controlFlowStack.peek() instanceof Instruction.If instruction &&
                                         !(instruction instanceof Instruction.While)) {
-                                    instruction.jumpTo = ++address;
+                                    instruction.setJumpTo(++address);
                                     controlFlowStack.pop();
                                     Instruction jumpInstruction = new Instruction.IfJump(-1, depth);
                                     this.instructions.add(jumpInstruction);
                                     controlFlowStack.add(jumpInstruction);
                                     String instr =  c.substring(1, c.length() - 1).replaceFirst("elif", "").strip();
-                                    Instruction.If newInstruction = new Instruction.If(instr, scope);
+                                    Instruction.If newInstruction = new Instruction.If(address, instr, scope);
                                     if (!newInstruction.valid) {
                                         return this.compileError(i, newInstruction.err);
                                     }
-                                    this.instructions.add(newInstruction);
+                                    this.instructions.addAll(newInstruction.getChain());
                                     controlFlowStack.add(newInstruction);
                                     scope.removeLast();
                                     scope.add(new LinkedHashMap<>());
@@ -179,7 +354,7 @@ public class AliasedCommand {
                             case "else" -> {
                                 if (!controlFlowStack.isEmpty() && controlFlowStack.peek() instanceof Instruction.If instruction &&
                                         !(instruction instanceof Instruction.While)) {
-                                    instruction.jumpTo = address + 1;
+                                    instruction.setJumpTo(address + 1);
                                     controlFlowStack.pop();
                                     Instruction newInstruction = new Instruction.Jump(address);
                                     this.instructions.add(newInstruction);
@@ -200,6 +375,22 @@ public class AliasedCommand {
                                 if (!instruction.valid) {
                                     return this.compileError(i, instruction.err);
                                 }
+                                this.instructions.addAll(instruction.getChain());
+                                controlFlowStack.add(instruction);
+                            }
+                            // counted loop, compiled to a loop head and a single instruction at [end] that steps the counter
+                            case "for" -> {
+                                depth++;
+                                scope.add(new LinkedHashMap<>());
+                                String instr =  c.substring(1, c.length() - 1).replaceFirst("for", "").strip();
+                                Matcher loop = FOR.matcher(instr);
+                                if (!loop.matches()) {
+                                    return this.compileError(i, "for should be of form [for var = (expression) to (expression)] or [for var = (expression) to (expression) step (expression)]");
+                                }
+                                Instruction.For instruction = new Instruction.For(address, loop.group(1), loop.group(2), loop.group(3), loop.group(4), scope);
+                                if (!instruction.valid) {
+                                    return this.compileError(i, instruction.err);
+                                }
                                 this.instructions.add(instruction);
                                 controlFlowStack.add(instruction);
                             }
@@ -212,11 +403,16 @@ public class AliasedCommand {
                                 }
                                 else if (controlFlowStack.peek() instanceof Instruction.While instruction) {
                                     this.instructions.add(new Instruction.Jump(instruction.startAddress));
+                                    instruction.setJumpTo(address + 1);
+                                    controlFlowStack.pop();
+                                }
+                                else if (controlFlowStack.peek() instanceof Instruction.For instruction) {
+                                    this.instructions.add(new Instruction.Next(instruction));
                                     instruction.jumpTo = address + 1;
                                     controlFlowStack.pop();
                                 }
                                 else if (controlFlowStack.peek() instanceof Instruction.Jump instruction) {
-                                    instruction.jumpTo = address--;
+                                    instruction.setJumpTo(address--);
                                     controlFlowStack.pop();
                                     // processes all the previous if/elif/else chains, so they correctly skip over elif/else after if
                                     // their condition passes
@@ -239,6 +435,32 @@ public class AliasedCommand {
                                 }
                                 this.instructions.add(instruction);
                             }
+                            // [yield] and [sleep] suspend the alias until a later tick, resuming where it left off; aliases
+                            // run from another alias' command line can't suspend, only those entered with [call] can
+                            case "yield", "sleep" -> {
+                                String instr =  c.substring(1, c.length() - 1).replaceFirst(ctrl, "").strip();
+                                if ("yield".equals(ctrl) && !instr.isEmpty()) {
+                                    return this.compileError(i, "yield should be of form [yield]");
+                                }
+                                Instruction.Sleep instruction = new Instruction.Sleep(instr, scope);
+                                if (!instruction.valid) {
+                                    return this.compileError(i, instruction.err);
+                                }
+                                this.instructions.add(instruction);
+                            }
+                            // [call] runs another alias directly, optionally assigning its return value
+                            case "call" -> {
+                                String instr =  c.substring(1, c.length() - 1).replaceFirst("call", "").strip();
+                                Matcher call = CALL.matcher(instr);
+                                if (!call.matches()) {
+                                    return this.compileError(i, "call should be of form [call alias(args)] or [call type var = alias(args)]");
+                                }
+                                Instruction.Call instruction = new Instruction.Call(call.group(2), call.group(3), call.group(1), scope);
+                                if (!instruction.valid) {
+                                    return this.compileError(i, instruction.err);
+                                }
+                                this.instructions.add(instruction);
+                            }
                             // [fetch] retrieves the last return value in scope. there is no type inference for return values so it must be
                             // cast. attempting to cast a string as any number will set it to 0.
                             case "fetch" -> {
@@ -260,20 +482,32 @@ public class AliasedCommand {
                     }
                 }
                 else {
-                    this.instructions.add(new Instruction.Command(cmd));
+                    this.instructions.add(new Instruction.Command(cmd, scope));
+                }
+                this.frameSize = Math.max(this.frameSize, Variable.Definition.nextSlot(scope));
+                // conditions may compile to more than one instruction
+                address = this.instructions.size();
+                while (this.instructionLines.size() < address) {
+                    this.instructionLines.add(i);
                 }
-                address++;
             }
         }
+        // blocks left open are closed by the last line
+        int last = this.commands.size() - 1;
         while (!controlFlowStack.isEmpty()) {
             scope.removeLast();
             if (controlFlowStack.peek() instanceof Instruction.While instruction) {
                 this.instructions.add(new Instruction.Jump(instruction.startAddress));
+                instruction.setJumpTo(address + 1);
+                controlFlowStack.pop();
+            }
+            else if (controlFlowStack.peek() instanceof Instruction.For instruction) {
+                this.instructions.add(new Instruction.Next(instruction));
                 instruction.jumpTo = address + 1;
                 controlFlowStack.pop();
             }
             else if (controlFlowStack.peek() instanceof Instruction.Jump instruction) {
-                instruction.jumpTo = address--;
+                instruction.setJumpTo(address--);
                 controlFlowStack.pop();
                 while (!controlFlowStack.isEmpty() && controlFlowStack.peek() instanceof Instruction.IfJump instruction1) {
                     instruction1.jumpTo = address + 1;
@@ -285,6 +519,11 @@ public class AliasedCommand {
             }
             address++;
         }
+        while (this.instructionLines.size() < this.instructions.size()) {
+            this.instructionLines.add(last);
+        }
+        this.checkpoints.clear();
+        this.checkpoints.addAll(checkpoints);
         /*
         TechnicalToolbox.log("/{} compiled", this.alias);
         for (int i = 0; i < this.instructions.size(); i++) {
@@ -294,6 +533,54 @@ public class AliasedCommand {
         return true;
     }
 
+    /**
+     * Appends the previous compile's output for the remaining lines, if they were compiled from the same state.
+     * @param checkpoint state at the current line boundary
+     * @param checkpoints new checkpoints so far, to which the reused checkpoints are added
+     * @return false if the previous compile has no matching line boundary
+     */
+    private boolean reuseSuffix(Checkpoint checkpoint, List<Checkpoint> checkpoints, int previousFrameSize) {
+        int line = checkpoint.line - this.commands.size() + this.compiledLines.size();
+        for (int n = 0; n < this.checkpoints.size(); n++) {
+            Checkpoint old = this.checkpoints.get(n);
+            if (old.line == line && Checkpoint.sameScope(old.scope, checkpoint.scope)) {
+                int shift = checkpoint.address - old.address;
+                for (int compiledLine : this.compiledInstructionLines.subList(old.address, this.compiled.size())) {
+                    this.instructionLines.add(compiledLine + checkpoint.line - line);
+                }
+                for (Instruction instruction : this.compiled.subList(old.address, this.compiled.size())) {
+                    if (instruction instanceof Instruction.Jump jump && shift != 0) {
+                        jump = jump.copy();
+                        jump.jumpTo += jump.jumpTo >= 0 ? shift : 0;
+                        instruction = jump;
+                    }
+                    this.instructions.add(instruction);
+                }
+                for (Checkpoint reused : this.checkpoints.subList(n, this.checkpoints.size())) {
+                    checkpoints.add(new Checkpoint(reused.line + checkpoint.line - line, reused.address + shift, reused.scope,
+                            Math.max(reused.frameSize, checkpoint.frameSize)));
+                }
+                this.frameSize = Math.max(this.frameSize, previousFrameSize);
+                return true;
+            }
+            if (old.line > line) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return string uniquely identifying argument names, types and options, in order
+     */
+    private String argumentSignature() {
+        StringBuilder signature = new StringBuilder();
+        for (Variable.Definition def : this.argumentDefinitions.values()) {
+            signature.append(def.name).append(':').append(def.typeName).append('|').append(String.join(",", def.args)).append(' ');
+        }
+        return signature.toString();
+    }
+
     /**
      * Logs an error and stores an error message.
      * @param line line number
@@ -326,55 +613,62 @@ public class AliasedCommand {
      * @return true if successful, false if compilation failed
      */
     public boolean register(CommandDispatcher<ServerCommandSource> dispatcher) {
-        if (!AliasManager.ALIASES.containsKey(this.alias)) {
-            AliasManager.ALIASES.put(this.alias, this);
-        }
+        AliasManager.ALIASES.putIfAbsent(this.alias, this);
         // Compile first, if compilation fails then it does nothing
-        if (!this.compile()) {
+        if (!this.build()) {
             return false;
         }
-        this.status = "Compiled successfully";
-        List<ArgumentBuilder<ServerCommandSource, ?>> tree = new ArrayList<>();
+        this.registerTree(dispatcher);
+        return true;
+    }
+
+    /**
+     * Compiles the alias ahead of registration, or marks it to be compiled on first execution. Safe to call off the
+     * server thread, as long as the alias isn't registered yet.
+     * @param lazy whether to defer compilation
+     * @return false if compilation failed
+     */
+    public boolean prepare(boolean lazy) {
+        this.compilePending = lazy;
+        this.prepared = lazy || this.build();
+        return this.prepared;
+    }
+
+    /**
+     * Registers an alias that went through {@link AliasedCommand#prepare(boolean)}, without compiling it again.
+     * @param dispatcher dispatcher to register to
+     * @return false if the alias failed to compile
+     */
+    public boolean registerPrepared(CommandDispatcher<ServerCommandSource> dispatcher) {
+        if (!this.prepared) {
+            return false;
+        }
+        this.registerTree(dispatcher);
+        return true;
+    }
+
+    /**
+     * Builds and registers the command tree for this alias' arguments.
+     * @param dispatcher dispatcher to register to
+     */
+    private void registerTree(CommandDispatcher<ServerCommandSource> dispatcher) {
         // Execution with required arguments
         if (!this.argumentDefinitions.isEmpty()) {
-            // the horror
+            // one node per argument, built from the bottom up
             Variable.Definition[] vars = this.argumentDefinitions.values().toArray(new Variable.Definition[0]);
+            ArgumentBuilder<ServerCommandSource, ?> tree = null;
             for (int i = vars.length - 1; i >= 0; i--) {
-                Variable.Definition def = vars[i];
-                List<ArgumentBuilder<ServerCommandSource, ?>> baseNodes = new ArrayList<>();
-                // selection adds each option as its own literal, needs to modify command source to preserve arguments
-                if ("selection".equals(def.typeName)) {
-                    for (String s : def.args) {
-                        baseNodes.add(CommandManager.literal(s).requires(source -> {
-                            ((CommandSourceModifier) source).technicalToolbox$addSelector(def.name, s);
-                            return true;
-                        }));
-                    }
-                }
-                else {
-                    baseNodes.add(CommandManager.argument(def.name, def.getArgumentType()));
-                }
-                // build command tree by layer, from the bottom up
-                if (tree.isEmpty()) {
-                    for (ArgumentBuilder<ServerCommandSource, ?> base : baseNodes) {
-                        tree.add(base.executes(this::execute));
-                    }
-                }
-                else {
-                    for (ArgumentBuilder<ServerCommandSource, ?> base : baseNodes) {
-                        for (ArgumentBuilder<ServerCommandSource, ?> treeNode : tree) {
-                            base = base.then(treeNode);
-                        }
-                    }
-                    tree = baseNodes;
+                RequiredArgumentBuilder<ServerCommandSource, ?> node = CommandManager.argument(vars[i].name, vars[i].getArgumentType());
+                // clients see selections as plain strings, so suggestions have to come from the server
+                if (node.getType() instanceof SelectionArgumentType selection) {
+                    node.suggests(selection::listSuggestions);
                 }
+                tree = tree == null ? node.executes(this::execute) : node.then(tree);
             }
-            LiteralArgumentBuilder<ServerCommandSource> root = CommandManager.literal(this.alias)
-                            .requires(source -> source.hasPermissionLevel(this.getPermission()));
-            for (ArgumentBuilder<ServerCommandSource, ?> base : tree) {
-                root = root.then(base);
-            }
-            dispatcher.register(root.executes(this::getCommandInfo));
+            dispatcher.register(CommandManager.literal(this.alias)
+                    .requires(source -> source.hasPermissionLevel(this.getPermission()))
+                    .then(tree)
+                    .executes(this::getCommandInfo));
         }
         // Execution if no arg provided
         else {
@@ -382,15 +676,127 @@ public class AliasedCommand {
                     .requires(source -> source.hasPermissionLevel(this.getPermission())))
                     .executes(this::execute));
         }
+        ServerUtil.markCommandTreeChanged(this.permission);
+        this.registeredSignature = this.argumentSignature();
+        this.registeredPermission = this.permission;
+    }
+
+    /**
+     * Compiles and optimizes the alias, without touching the dispatcher.
+     * @return false if compilation failed
+     */
+    private boolean build() {
+        if (!this.compile()) {
+            return false;
+        }
+        this.unoptimizedSize = this.instructions.size();
+        int[] lines = this.instructionLines.stream().mapToInt(Integer::intValue).toArray();
+        this.setProgram(Optimizer.optimize(this.instructions, lines, this.alias, this.argumentDefinitions.values()),
+                this.frameSize);
         return true;
     }
 
+    /**
+     * Replaces what runs with an optimized program, either freshly compiled or read from the compiled cache.
+     */
+    private void setProgram(Optimizer.Program optimized, int frameSize) {
+        this.compilePending = false;
+        this.instructions.clear();
+        this.instructions.addAll(optimized.instructions());
+        this.instructionLines.clear();
+        for (int line : optimized.lines()) {
+            this.instructionLines.add(line);
+        }
+        this.frameSize = frameSize;
+        this.program = List.copyOf(optimized.instructions());
+        this.programLines = optimized.lines();
+        this.programSource = List.copyOf(this.commands);
+        this.programFrameSize = frameSize;
+        this.pureBody = true;
+        this.callTargets = new HashSet<>();
+        for (Instruction instruction : this.program) {
+            if (instruction instanceof Instruction.Command || instruction instanceof Instruction.Sleep || instruction
+                    instanceof Instruction.Fetch) {
+                this.pureBody = false;
+            }
+            else if (instruction instanceof Instruction.Call call) {
+                this.callTargets.add(call.getTargetName());
+            }
+        }
+        programVersion.incrementAndGet();
+        // addresses and lines change on recompile, so restart any running profile
+        if (this.profiler != null && this.profiler.isRunning()) {
+            this.profiler = new AliasProfiler(this.programLines, this.programSource);
+        }
+        this.status = "Compiled successfully";
+    }
+
+    /**
+     * Writes everything needed to register and run this alias without parsing or compiling it again, for
+     * {@link AliasCache}. Only valid after a successful compile.
+     */
+    void writeCompiled(DataOutput out) throws IOException {
+        ProgramCodec.writeString(out, this.alias);
+        out.writeInt(this.permission);
+        out.writeBoolean(this.silent);
+        ProgramCodec.writeStrings(out, this.commands.toArray(new String[0]));
+        out.writeInt(this.argumentDefinitions.size());
+        for (Variable.Definition definition : this.argumentDefinitions.values()) {
+            ProgramCodec.writeString(out, definition.name);
+            ProgramCodec.writeString(out, definition.typeName);
+            ProgramCodec.writeStrings(out, definition.args);
+        }
+        out.writeInt(this.unoptimizedSize);
+        out.writeInt(this.programFrameSize);
+        ProgramCodec.writeProgram(out, this.program);
+        for (int line : this.programLines) {
+            out.writeInt(line);
+        }
+    }
+
+    /**
+     * Reads an alias written by {@link AliasedCommand#writeCompiled(DataOutput)}, ready to be registered.
+     * @return the alias, or null if a global alias of the same name exists
+     * @throws IllegalStateException if the data is malformed
+     */
+    static AliasedCommand readCompiled(ByteBuffer in, boolean global) {
+        String alias = ProgramCodec.readString(in);
+        if (AliasManager.ALIASES.isGlobal(alias)) {
+            return null;
+        }
+        int permission = in.getInt();
+        boolean silent = in.get() != 0;
+        List<String> commands = Arrays.asList(ProgramCodec.readStrings(in));
+        List<Variable.Definition> arguments = new ArrayList<>();
+        for (int i = in.getInt(); i > 0; i--) {
+            arguments.add(new Variable.Definition(ProgramCodec.readString(in), ProgramCodec.readString(in), ProgramCodec
+                    .readStrings(in)));
+        }
+        AliasedCommand aliasedCommand = new AliasedCommand(alias, permission, silent, commands, arguments, global);
+        aliasedCommand.unoptimizedSize = in.getInt();
+        int frameSize = in.getInt();
+        List<Instruction> program = ProgramCodec.readProgram(in);
+        int[] lines = new int[program.size()];
+        for (int i = 0; i < lines.length; i++) {
+            if ((lines[i] = in.getInt()) < 0 || lines[i] >= commands.size()) {
+                throw new IllegalStateException("line out of range");
+            }
+        }
+        aliasedCommand.setProgram(new Optimizer.Program(program, lines), frameSize);
+        aliasedCommand.prepared = true;
+        return aliasedCommand;
+    }
+
     /**
      * Deregisters a command alias and resends the command tree.
      * @param server server to deregister commands from.
      */
     public void deregister(MinecraftServer server, boolean hard) {
-        ServerUtil.removeCommandByName(server, this.alias);
+        // only players who could see the alias have it in their tree
+        ServerUtil.removeCommandByName(server, this.alias, this.registeredSignature != null ? this.registeredPermission : 0);
+        this.registeredSignature = null;
+        programVersion.incrementAndGet();
+        AliasScheduler.cancel(this);
         if (hard) {
             AliasManager.ALIASES.remove(this.alias);
         }
@@ -401,52 +807,122 @@ public class AliasedCommand {
      * @param context command context
      */
     private int execute(CommandContext<ServerCommandSource> context) {
-        LinkedHashMap<String, Variable> variableDefinitions = new LinkedHashMap<>();
-        List<Instruction> instructions = List.copyOf(this.instructions);
-        AliasedCommandSource source = (AliasedCommandSource) context.getSource();
-        source.technicalToolbox$AddToRecursionDepth(1);
-        // load arguments locally
+        Frame frame = this.createFrame(context.getSource());
+        if (frame == null) {
+            return 0;
+        }
+        // load arguments locally, into the slots compile() assigned them
+        int slot = 0;
         for (Variable.Definition var : this.argumentDefinitions.values()) {
-            if ("selection".equals(var.typeName)) {
-                String arg = ((CommandSourceModifier) context.getSource()).technicalToolbox$getSelectorArgument(var.name);
-                variableDefinitions.put(var.name, new Variable(var, arg));
-            }
-            else {
-                Object arg = context.getArgument(var.name, var.type.clazz());
-                variableDefinitions.put(var.name, new Variable(var, arg));
-            }
+            frame.set(slot++, context.getArgument(var.name, var.type.clazz()));
         }
-        int i;
-        // main loop for running instructions; opcode of -2 is return, -1 is donothing, >=0 is an instruction index to jump to
-        for (i = 0; i < instructions.size() && (ConfigOptions.ALIAS_INSTRUCTION_LIMIT.val() == -1 ||
-                source.technicalToolbox$getInstructionCount() < ConfigOptions.ALIAS_INSTRUCTION_LIMIT.val()) &&
-                source.technicalToolbox$getRecursionCount() < ConfigOptions.ALIAS_MAX_RECURSION_DEPTH.val(); i++) {
-            source.technicalToolbox$AddToInstructionCount(1);
-            int out = instructions.get(i).execute(this, context, variableDefinitions);
-            if (out == -2) {
-                return 0;
-            }
-            else if (out >= 0) {
-                i = out - 1;
+        ResultCache.Key key = this.getResultKey(frame);
+        if (key != null) {
+            ResultCache.Result cached = this.resultCache.get(key);
+            if (cached != null) {
+                if (cached.returned()) {
+                    ((CommandSourceModifier) context.getSource()).technicalToolbox$setReturnValue(cached.value());
+                }
+                return cached.result();
             }
         }
-        if (source.technicalToolbox$getRecursionCount() >= ConfigOptions.ALIAS_MAX_RECURSION_DEPTH.val()) {
-            if (source.technicalToolbox$getRecursionCount() == ConfigOptions.ALIAS_MAX_RECURSION_DEPTH.val()) {
-                context.getSource().sendError(TextUtils.formattable("Exceeded the max recursion depth of " +
-                        ConfigOptions.ALIAS_MAX_RECURSION_DEPTH.val()));
-                source.technicalToolbox$AddToRecursionDepth(1);
-            }
-            return 0;
+        return new AliasContinuation(this, context, this.program, frame, this.getRunningProfiler(), key)
+                .run(((AliasedCommandSource) context.getSource()).technicalToolbox$getRecursionCount() == 0);
+    }
+
+    /**
+     * Creates a frame to run this alias in, first compiling it if compilation was deferred.
+     * @return a frame of the right size, or null if the alias is not runnable; sends errors to the source if failed
+     */
+    public Frame createFrame(ServerCommandSource source) {
+        if (this.compilePending && !this.build()) {
+            // lazily compiled aliases are only found to be broken now, so remove them as if they failed to register
+            this.deregister(source.getServer(), false);
+            source.sendError(TextUtils.formattable("Failed to compile:"));
+            source.sendError(TextUtils.formattable(this.status));
+            return null;
         }
-        if (i < instructions.size()) {
-            context.getSource().sendError(TextUtils.formattable("Exceeded the instruction limit of " +
-                    ConfigOptions.ALIAS_INSTRUCTION_LIMIT.val()));
-            return 0;
+        return new Frame(this.programFrameSize);
+    }
+
+    /**
+     * @return argument definitions in declaration order, which is also their frame slot order
+     */
+    public Collection<Variable.Definition> getArgumentDefinitions() {
+        return this.argumentDefinitions.values();
+    }
+
+    /**
+     * @return whether this alias is currently registered with the dispatcher
+     */
+    public boolean isRegistered() {
+        return this.registeredSignature != null;
+    }
+
+    /**
+     * @param frame frame with arguments loaded
+     * @return key to cache the result of running with these arguments under, or null if results aren't cached
+     */
+    ResultCache.Key getResultKey(Frame frame) {
+        return ConfigOptions.ALIAS_RESULT_CACHE_SIZE.val() > 0 && this.isPure() ? ResultCache.key(frame, this
+                .argumentDefinitions.size()) : null;
+    }
+
+    public ResultCache getResultCache() {
+        return this.resultCache;
+    }
+
+    /**
+     * An alias is pure if it runs no commands, doesn't sleep or fetch, and only calls other pure aliases, so that its
+     * result depends on nothing but its arguments.
+     */
+    public boolean isPure() {
+        if (purityVersion != AliasedCommand.getAliasVersion()) {
+            AliasedCommand.updatePurity();
+        }
+        return this.pure;
+    }
+
+    /**
+     * Recomputes purity of all aliases. Starts from every alias that is pure on its own, then repeatedly drops those
+     * calling an alias that isn't, so aliases calling each other are pure unless something they reach is not.
+     */
+    private static void updatePurity() {
+        // one snapshot throughout, so aliases registered meanwhile don't make it inconsistent
+        Map<String, AliasedCommand> snapshot = AliasManager.ALIASES.snapshot();
+        Collection<AliasedCommand> aliases = snapshot.values();
+        for (AliasedCommand alias : aliases) {
+            alias.pure = alias.pureBody && !alias.compilePending;
         }
-        if (source.technicalToolbox$getRecursionCount() < ConfigOptions.ALIAS_MAX_RECURSION_DEPTH.val()) {
-            source.technicalToolbox$AddToRecursionDepth(-1);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (AliasedCommand alias : aliases) {
+                if (!alias.pure) {
+                    continue;
+                }
+                for (String name : alias.callTargets) {
+                    AliasedCommand target = snapshot.get(name);
+                    if (target == null || !target.isRegistered() || !target.pure) {
+                        alias.pure = false;
+                        changed = true;
+                        break;
+                    }
+                }
+            }
         }
-        return 1;
+        purityVersion = AliasedCommand.getAliasVersion();
+    }
+
+    /**
+     * @return a counter that changes whenever any alias is rebuilt or removed, or the dispatcher tree changes
+     */
+    static long getAliasVersion() {
+        return (long) ServerUtil.getCommandTreeVersion() << 32 | programVersion.get() & 0xffffffffL;
+    }
+
+    AliasProfiler getRunningProfiler() {
+        return this.profiler != null && this.profiler.isRunning() ? this.profiler : null;
     }
 
     /**
@@ -463,7 +939,7 @@ public class AliasedCommand {
             ((CommandSourceModifier) source).technicalToolbox$shutUp(true);
         }
         try {
-            dispatcher.execute(dispatcher.parse(command, source));
+            this.parseCache.execute(dispatcher, command, source);
             ((CommandSourceModifier) source).technicalToolbox$shutUp(false);
         }
         catch (CommandSyntaxException e) {
@@ -672,9 +1148,67 @@ public class AliasedCommand {
     }
 
     /**
-     * Deregisters and attempts to re-register this alias with the provided command source's server.
+     * Starts recording per-line timings of the running program, discarding any previous profile.
+     */
+    public void startProfiling() {
+        this.profiler = new AliasProfiler(this.programLines, this.programSource);
+    }
+
+    /**
+     * @return false if no profile is running
+     */
+    public boolean stopProfiling() {
+        if (this.profiler == null || !this.profiler.isRunning()) {
+            return false;
+        }
+        this.profiler.stop();
+        return true;
+    }
+
+    /**
+     * @return the current or last profile, or null if this alias was never profiled
+     */
+    public AliasProfiler getProfiler() {
+        return this.profiler;
+    }
+
+    /**
+     * @return number of instructions as compiled, before optimization
+     */
+    public int getUnoptimizedInstructionCount() {
+        return this.unoptimizedSize;
+    }
+
+    /**
+     * @return number of instructions actually executed by the interpreter
+     */
+    public int getInstructionCount() {
+        return this.instructions.size();
+    }
+
+    /**
+     * @return optimized instructions of the last successful compile
+     */
+    List<Instruction> getProgram() {
+        return this.program;
+    }
+
+    /**
+     * Recompiles this alias. It is only deregistered and re-registered with the provided command source's server if its
+     * arguments or permission level changed, since registered nodes always execute the latest compiled instructions.
      */
     public boolean refresh(ServerCommandSource source) {
+        if (this.argumentSignature().equals(this.registeredSignature) && this.permission == this.registeredPermission &&
+                source.getDispatcher().getRoot().getChild(this.alias) != null) {
+            if (this.build()) {
+                return true;
+            }
+            // same as a failed re-registration, aliases that don't compile aren't left executable
+            this.deregister(source.getServer(), false);
+            source.sendError(TextUtils.formattable("Failed to compile:"));
+            source.sendError(TextUtils.formattable(this.status));
+            return false;
+        }
         this.deregister(source.getServer(), false);
         return this.register(source);
     }
@@ -749,6 +1283,20 @@ public class AliasedCommand {
      * @return whether alias was successfully restored or not; outputs errors if failed
      */
     public static boolean readFromFile(Path path, boolean global) {
+        AliasedCommand aliasedCommand = AliasedCommand.parseFile(path, global);
+        if (aliasedCommand != null) {
+            AliasManager.ALIASES.put(aliasedCommand.alias, aliasedCommand);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Reads an alias from a file without adding it to {@link AliasManager#ALIASES}, so it is safe to call off-thread.
+     * @param path path to read from
+     * @return the alias, or null if it couldn't be read; outputs errors if failed
+     */
+    public static AliasedCommand parseFile(Path path, boolean global) {
         try (BufferedReader bufferedReader = Files.newBufferedReader(path)) {
             boolean readingCommandState = false, silent = ConfigOptions.ALIAS_DEFAULT_SILENT.val();
             String line, alias = null;
@@ -762,8 +1310,8 @@ public class AliasedCommand {
                         switch (split[0].toLowerCase()) {
                             case "alias" -> {
                                 alias = line.replaceFirst("(?i)Alias: *", "").strip();
-                                if (AliasManager.ALIASES.containsKey(alias) && AliasManager.ALIASES.get(alias).global) {
-                                    return false;
+                                if (AliasManager.ALIASES.isGlobal(alias)) {
+                                    return null;
                                 }
                             }
                             case "permission level" -> {
@@ -772,7 +1320,7 @@ public class AliasedCommand {
                                     permission = Integer.parseInt(tmp);
                                 } catch (NumberFormatException e) {
                                     TechnicalToolbox.error(path + ": Couldn't parse \"" + tmp + "\" as int");
-                                    return false;
+                                    return null;
                                 }
                             }
                             case "silent" -> {
@@ -811,18 +1359,18 @@ public class AliasedCommand {
             }
             if (alias == null) {
                 TechnicalToolbox.error(path + ": Alias not specified in file");
-                return false;
+                return null;
             }
             if (commands.isEmpty()) {
                 TechnicalToolbox.error(path + ": Missing script body");
-                return false;
+                return null;
             }
-            new AliasedCommand(alias, permission, silent, commands, arguments, global);
+            return new AliasedCommand(alias, permission, silent, commands, arguments, global);
         }
         catch (IOException e) {
             TechnicalToolbox.warn("Something went wrong reading from file " + path);
         }
-        return true;
+        return null;
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,94 @@
+package com.birblett.impl.command.alias;
+
+import com.birblett.impl.config.ConfigOptions;
+import com.birblett.util.ServerUtil;
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.ParseResults;
+import com.mojang.brigadier.context.CommandContextBuilder;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import net.minecraft.server.command.ServerCommandSource;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Per-alias LRU cache of parsed command lines, so lines that have already been parsed for a source of the same shape
+ * skip straight to execution. All entries are dropped whenever the dispatcher tree changes. Cached parses are only bound
+ * to a source while they run, so they don't keep players or other sources alive for as long as they're cached.
+ */
+public class ParseCache {
+
+    private final LinkedHashMap<Key, ParseResults<ServerCommandSource>> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, ParseResults<ServerCommandSource>> eldest) {
+            return this.size() > ConfigOptions.ALIAS_PARSE_CACHE_SIZE.val();
+        }
+    };
+    private int version = ServerUtil.getCommandTreeVersion();
+
+    /**
+     * Shape of a source as far as parsing is concerned. Alias command lines are always parsed with the permission
+     * override enabled, so only requirements based on the executing entity can differ between two sources.
+     */
+    private record Key(String command, boolean hasEntity, boolean isPlayer) {}
+
+    /**
+     * Parses and executes a command, or reuses a previous parse of the same command rebound to the provided source.
+     * @param dispatcher dispatcher to parse and execute with
+     * @param command full command string
+     * @param source source to execute the command with
+     * @return result of {@link CommandDispatcher#execute(ParseResults)}
+     */
+    public int execute(CommandDispatcher<ServerCommandSource> dispatcher, String command, ServerCommandSource source) throws
+            CommandSyntaxException {
+        if (ConfigOptions.ALIAS_PARSE_CACHE_SIZE.val() <= 0) {
+            return dispatcher.execute(dispatcher.parse(command, source));
+        }
+        if (this.version != ServerUtil.getCommandTreeVersion()) {
+            this.cache.clear();
+            this.version = ServerUtil.getCommandTreeVersion();
+        }
+        Key key = new Key(command, source.getEntity() != null, source.isExecutedByPlayer());
+        ParseResults<ServerCommandSource> parse = this.cache.get(key);
+        if (parse != null) {
+            // redirected/forked children derive their sources from the root at execution time, so only the root needs rebinding
+            parse.getContext().withSource(source);
+        }
+        else {
+            parse = dispatcher.parse(command, source);
+            if (!ParseCache.isCacheable(parse)) {
+                return dispatcher.execute(parse);
+            }
+            this.cache.put(key, parse);
+        }
+        try {
+            return dispatcher.execute(parse);
+        }
+        finally {
+            ParseCache.unbind(parse);
+        }
+    }
+
+    public void clear() {
+        this.cache.clear();
+    }
+
+    /**
+     * Drops the sources a cached parse was last bound to. Execution builds its contexts before running anything, so
+     * this doesn't affect the same parse running further up the stack, i.e. in an alias that runs itself.
+     */
+    private static void unbind(ParseResults<ServerCommandSource> parse) {
+        for (CommandContextBuilder<ServerCommandSource> context = parse.getContext(); context != null; context = context
+                .getChild()) {
+            context.withSource(null);
+        }
+    }
+
+    /**
+     * Failed parses are never cached so their errors stay accurate.
+     */
+    private static boolean isCacheable(ParseResults<ServerCommandSource> parse) {
+        return !parse.getReader().canRead() && parse.getExceptions().isEmpty();
+    }
+
+}
@@ -0,0 +1,95 @@
+package com.birblett.impl.command.alias;
+
+import com.birblett.impl.command.alias.language.Frame;
+import com.birblett.impl.command.alias.language.Operator;
+import com.birblett.impl.config.ConfigOptions;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-alias LRU cache of the results of a pure alias, keyed on its argument values. All entries are dropped whenever
+ * any alias is rebuilt or the dispatcher tree changes, since either can change what a pure alias ends up calling.
+ */
+public class ResultCache {
+
+    private final LinkedHashMap<List<Object>, Result> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<List<Object>, Result> eldest) {
+            return this.size() > ConfigOptions.ALIAS_RESULT_CACHE_SIZE.val();
+        }
+    };
+    private long version = AliasedCommand.getAliasVersion();
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * Result of a single execution.
+     * @param returned whether the alias returned a value through [return]
+     * @param value returned value, may be null even if returned
+     * @param result command result
+     */
+    public record Result(boolean returned, Operator value, int result) {}
+
+    /**
+     * Arguments of an execution, along with the alias version they were read at so that results computed across a
+     * version change aren't stored.
+     */
+    public record Key(List<Object> arguments, long version) {}
+
+    /**
+     * @param frame frame with arguments stored in its first slots
+     * @param arguments number of arguments
+     */
+    public static Key key(Frame frame, int arguments) {
+        Object[] values = new Object[arguments];
+        for (int i = 0; i < arguments; i++) {
+            values[i] = frame.get(i);
+        }
+        return new Key(Arrays.asList(values), AliasedCommand.getAliasVersion());
+    }
+
+    /**
+     * @return the cached result, or null on a miss
+     */
+    public Result get(Key key) {
+        this.validate();
+        Result result = this.cache.get(key.arguments());
+        if (result != null) {
+            this.hits++;
+        }
+        else {
+            this.misses++;
+        }
+        return result;
+    }
+
+    public void put(Key key, Result result) {
+        this.validate();
+        if (key.version() == this.version) {
+            this.cache.put(key.arguments(), result);
+        }
+    }
+
+    public long getHits() {
+        return this.hits;
+    }
+
+    public long getMisses() {
+        return this.misses;
+    }
+
+    public void clear() {
+        this.cache.clear();
+    }
+
+    private void validate() {
+        if (this.version != AliasedCommand.getAliasVersion()) {
+            this.cache.clear();
+            this.version = AliasedCommand.getAliasVersion();
+        }
+    }
+
+}
@@ -5,7 +5,6 @@ import com.mojang.brigadier.arguments.*;
 import java.util.HashMap;
 import java.util.function.BiFunction;
 import java.util.function.Function;
-import java.util.regex.Pattern;
 
 public class AliasConstants {
 
@@ -14,7 +13,6 @@ public class AliasConstants {
     public static final HashMap<Class<?>, Integer> TYPE_MAP = new HashMap<>();
     public static final HashMap<String, Integer> TYPE_VALUE_MAP = new HashMap<>();
     public static final HashMap<Integer, String> INV_VALUE_MAP = new HashMap<>();
-    public static final Pattern TOKEN = Pattern.compile("((?<!\\\\)\".*?(?<!\\\\)\"|[0-9]+[.][0-9]+[fF]?|[0-9]+[fF]?|[()+\\-%*/^]|[a-zA-Z_][a-zA-Z0-9_]*)");
 
     static {
         ARGUMENT_TYPES.put("int", new Variable.Entry<>(0, opt -> IntegerArgumentType.integer(), Integer.class));
@@ -33,7 +31,7 @@ public class AliasConstants {
         ARGUMENT_TYPES.put("word", new Variable.Entry<>(0, opt -> StringArgumentType.word(), String.class));
         ARGUMENT_TYPES.put("string", new Variable.Entry<>(0, opt -> StringArgumentType.string(), String.class));
         ARGUMENT_TYPES.put("regex", new Variable.Entry<>(1, opt -> StringArgumentType.string(), String.class));
-        ARGUMENT_TYPES.put("selection", new Variable.Entry<>(-1, opt -> StringArgumentType.string(), String.class));
+        ARGUMENT_TYPES.put("selection", new Variable.Entry<>(-1, SelectionArgumentType::new, String.class));
         PRECEDENCE.put("+", 0);
         PRECEDENCE.put("-", 0);
         PRECEDENCE.put("*", 1);
@@ -0,0 +1,113 @@
+package com.birblett.impl.command.alias.language;
+
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+
+/**
+ * List value of the alias language. Elements share a single type fixed at declaration; numeric elements are kept in
+ * primitive lists so appending and indexing never box. Reading out of bounds gives 0 or an empty string, the same as
+ * an unset value.
+ */
+public class AliasList {
+
+    private final int type;
+    private final LongArrayList longs;
+    private final DoubleArrayList doubles;
+    private final ObjectArrayList<String> strings;
+
+    /**
+     * @param type element type, as in {@link AliasConstants#TYPE_VALUE_MAP}
+     */
+    public AliasList(int type) {
+        this.type = type;
+        this.longs = type <= 1 ? new LongArrayList() : null;
+        this.doubles = type == 2 || type == 3 ? new DoubleArrayList() : null;
+        this.strings = type >= 4 ? new ObjectArrayList<>() : null;
+    }
+
+    public int size() {
+        return this.longs != null ? this.longs.size() : this.doubles != null ? this.doubles.size() : this.strings.size();
+    }
+
+    /**
+     * @return kind of the elements, one of {@link Frame#LONG}, {@link Frame#DOUBLE} or {@link Frame#OBJECT}
+     */
+    public byte kind() {
+        return this.longs != null ? Frame.LONG : this.doubles != null ? Frame.DOUBLE : Frame.OBJECT;
+    }
+
+    public boolean inBounds(long index) {
+        return index >= 0 && index < this.size();
+    }
+
+    public long getLong(long index) {
+        if (!this.inBounds(index)) {
+            return 0;
+        }
+        int i = (int) index;
+        return this.longs != null ? this.longs.getLong(i) : this.doubles != null ? (long) this.doubles.getDouble(i) : 0;
+    }
+
+    public double getDouble(long index) {
+        if (!this.inBounds(index)) {
+            return 0;
+        }
+        int i = (int) index;
+        return this.longs != null ? this.longs.getLong(i) : this.doubles != null ? this.doubles.getDouble(i) : 0;
+    }
+
+    public String getString(long index) {
+        if (!this.inBounds(index)) {
+            return this.strings != null ? "" : this.longs != null ? "0" : "0.0";
+        }
+        int i = (int) index;
+        if (this.longs != null) {
+            return Long.toString(this.longs.getLong(i));
+        }
+        if (this.doubles != null) {
+            return this.type == 2 ? Float.toString((float) this.doubles.getDouble(i)) : Double.toString(this.doubles
+                    .getDouble(i));
+        }
+        return this.strings.get(i);
+    }
+
+    /**
+     * Appends the value of an expression, converted to the element type.
+     */
+    public void append(Expression value, Frame frame) {
+        if (this.longs != null) {
+            this.longs.add(this.type == 0 ? (int) value.getLong(frame) : value.getLong(frame));
+        }
+        else if (this.doubles != null) {
+            this.doubles.add(this.type == 2 ? (float) value.getDouble(frame) : value.getDouble(frame));
+        }
+        else {
+            this.strings.add(value.getString(frame));
+        }
+    }
+
+    /**
+     * Replaces an element with the value of an expression, converted to the element type.
+     * @param index index of the element, which must be in bounds
+     */
+    public void set(long index, Expression value, Frame frame) {
+        int i = (int) index;
+        if (this.longs != null) {
+            this.longs.set(i, this.type == 0 ? (int) value.getLong(frame) : value.getLong(frame));
+        }
+        else if (this.doubles != null) {
+            this.doubles.set(i, this.type == 2 ? (float) value.getDouble(frame) : value.getDouble(frame));
+        }
+        else {
+            this.strings.set(i, value.getString(frame));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.longs != null ? this.longs.toString() : this.doubles != null ? this.doubles.toString() : this.strings
+                .toString();
+    }
+
+}
@@ -0,0 +1,81 @@
+package com.birblett.impl.command.alias.language;
+
+import it.unimi.dsi.fastutil.objects.Object2DoubleLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2LongLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2ObjectLinkedOpenHashMap;
+
+/**
+ * Map value of the alias language, from string keys to values of a single type fixed at declaration. Numeric values
+ * are kept in primitive maps so reads and writes never box. Missing keys read as 0 or an empty string, the same as an
+ * unset value, and iteration follows insertion order.
+ */
+public class AliasMap {
+
+    private final int type;
+    private final Object2LongLinkedOpenHashMap<String> longs;
+    private final Object2DoubleLinkedOpenHashMap<String> doubles;
+    private final Object2ObjectLinkedOpenHashMap<String, String> strings;
+
+    /**
+     * @param type value type, as in {@link AliasConstants#TYPE_VALUE_MAP}
+     */
+    public AliasMap(int type) {
+        this.type = type;
+        this.longs = type <= 1 ? new Object2LongLinkedOpenHashMap<>() : null;
+        this.doubles = type == 2 || type == 3 ? new Object2DoubleLinkedOpenHashMap<>() : null;
+        this.strings = type >= 4 ? new Object2ObjectLinkedOpenHashMap<>() : null;
+    }
+
+    public int size() {
+        return this.longs != null ? this.longs.size() : this.doubles != null ? this.doubles.size() : this.strings.size();
+    }
+
+    /**
+     * @return kind of the values, one of {@link Frame#LONG}, {@link Frame#DOUBLE} or {@link Frame#OBJECT}
+     */
+    public byte kind() {
+        return this.longs != null ? Frame.LONG : this.doubles != null ? Frame.DOUBLE : Frame.OBJECT;
+    }
+
+    public long getLong(String key) {
+        return this.longs != null ? this.longs.getLong(key) : this.doubles != null ? (long) this.doubles.getDouble(key) : 0;
+    }
+
+    public double getDouble(String key) {
+        return this.longs != null ? this.longs.getLong(key) : this.doubles != null ? this.doubles.getDouble(key) : 0;
+    }
+
+    public String getString(String key) {
+        if (this.longs != null) {
+            return Long.toString(this.longs.getLong(key));
+        }
+        if (this.doubles != null) {
+            return this.type == 2 ? Float.toString((float) this.doubles.getDouble(key)) : Double.toString(this.doubles
+                    .getDouble(key));
+        }
+        String value = this.strings.get(key);
+        return value != null ? value : "";
+    }
+
+    /**
+     * Stores the value of an expression, converted to the value type.
+     */
+    public void put(String key, Expression value, Frame frame) {
+        if (this.longs != null) {
+            this.longs.put(key, this.type == 0 ? (int) value.getLong(frame) : value.getLong(frame));
+        }
+        else if (this.doubles != null) {
+            this.doubles.put(key, this.type == 2 ? (float) value.getDouble(frame) : value.getDouble(frame));
+        }
+        else {
+            this.strings.put(key, value.getString(frame));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.longs != null ? this.longs.toString() : this.doubles != null ? this.doubles.toString() : this.strings
+                .toString();
+    }
+
+}
@@ -0,0 +1,949 @@
+package com.birblett.impl.command.alias.language;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.Stack;
+
+/**
+ * Compiled form of an expression, built once from postfix at compile time. Nodes evaluate directly against a
+ * {@link Frame} in whichever representation the caller needs, so arithmetic never allocates intermediate values.
+ * Result kinds are {@link Frame#LONG}, {@link Frame#DOUBLE} and {@link Frame#OBJECT} (strings).
+ */
+public interface Expression {
+
+    byte kind(Frame frame);
+    long getLong(Frame frame);
+    double getDouble(Frame frame);
+    String getString(Frame frame);
+
+    /**
+     * @return whether this node evaluates to the same value regardless of frame
+     */
+    default boolean isConstant() {
+        return false;
+    }
+
+    /**
+     * @return this expression with all constant subexpressions evaluated ahead of time
+     */
+    default Expression fold() {
+        return this;
+    }
+
+    /**
+     * @return kind this always evaluates to given the proven kinds of the slots it reads, {@link Frame#UNSET} if that
+     * isn't known yet, or {@link SlotKinds#DYNAMIC} if it can only be decided at runtime
+     */
+    default byte staticKind(SlotKinds kinds) {
+        return SlotKinds.DYNAMIC;
+    }
+
+    /**
+     * @return an equivalent expression whose nodes don't check the kinds of their operands as they run, wherever the
+     * proven slot kinds allow it; nothing is modified in place, since the unspecialized tree is kept by the compiler
+     */
+    default Expression specialize(SlotKinds kinds) {
+        return this;
+    }
+
+    /**
+     * Builds an expression tree from the postfix output of {@link ExpressionParser#parseExpression}.
+     * @param post postfix queue of leaf nodes and operator strings
+     * @return root node of the expression
+     */
+    static Expression fromPostfix(Queue<Object> post) {
+        Stack<Expression> stack = new Stack<>();
+        for (Object o : post) {
+            if (o instanceof Expression e) {
+                stack.push(e);
+            }
+            else if (o instanceof String op) {
+                Expression right = stack.pop();
+                Expression left = stack.pop();
+                stack.push(Expression.binary(op, left, right));
+            }
+        }
+        return stack.pop();
+    }
+
+    /**
+     * @param symbol one of + - * / % ^
+     */
+    static Binary binary(String symbol, Expression left, Expression right) {
+        return switch (symbol) {
+            case "+" -> new Add(left, right);
+            case "-" -> new Subtract(left, right);
+            case "*" -> new Multiply(left, right);
+            case "/" -> new Divide(left, right);
+            case "%" -> new Modulo(left, right);
+            default -> new Power(left, right);
+        };
+    }
+
+    byte LONG = 0, DOUBLE = 1, STRING = 2, SLOT = 3, ADD = 4, SUBTRACT = 5, MULTIPLY = 6, DIVIDE = 7, MODULO = 8,
+            POWER = 9, INDEX = 10, LENGTH = 11, LONG_SLOT = 12, DOUBLE_SLOT = 13, LONG_ARITHMETIC = 14,
+            DOUBLE_ARITHMETIC = 15, CONCAT = 16;
+
+    /**
+     * Writes an expression tree in prefix order, in the format read by {@link Expression#read(ByteBuffer)}.
+     */
+    static void write(DataOutput out, Expression expression) throws IOException {
+        switch (expression) {
+            case LongConstant constant -> {
+                out.writeByte(LONG);
+                out.writeLong(constant.value());
+            }
+            case DoubleConstant constant -> {
+                out.writeByte(DOUBLE);
+                out.writeDouble(constant.value());
+            }
+            case StringConstant constant -> {
+                out.writeByte(STRING);
+                ProgramCodec.writeString(out, constant.value());
+            }
+            case Slot slot -> {
+                out.writeByte(SLOT);
+                ProgramCodec.writeString(out, slot.name());
+                out.writeInt(slot.slot());
+            }
+            case LongSlot slot -> {
+                out.writeByte(LONG_SLOT);
+                ProgramCodec.writeString(out, slot.name());
+                out.writeInt(slot.slot());
+            }
+            case DoubleSlot slot -> {
+                out.writeByte(DOUBLE_SLOT);
+                ProgramCodec.writeString(out, slot.name());
+                out.writeInt(slot.slot());
+            }
+            case LongArithmetic arithmetic -> {
+                out.writeByte(LONG_ARITHMETIC);
+                Expression.write(out, arithmetic.operation());
+            }
+            case DoubleArithmetic arithmetic -> {
+                out.writeByte(DOUBLE_ARITHMETIC);
+                Expression.write(out, arithmetic.operation());
+            }
+            case Concat concat -> {
+                out.writeByte(CONCAT);
+                Expression.write(out, concat.operation());
+            }
+            case Index index -> {
+                out.writeByte(INDEX);
+                Expression.write(out, index.container);
+                Expression.write(out, index.index);
+            }
+            case Length length -> {
+                out.writeByte(LENGTH);
+                Expression.write(out, length.container());
+            }
+            case Binary binary -> {
+                out.writeByte(switch (binary) {
+                    case Add ignored -> ADD;
+                    case Subtract ignored -> SUBTRACT;
+                    case Multiply ignored -> MULTIPLY;
+                    case Divide ignored -> DIVIDE;
+                    case Modulo ignored -> MODULO;
+                    case Power ignored -> POWER;
+                    default -> throw new IOException("can't write expression " + binary.getClass().getSimpleName());
+                });
+                Expression.write(out, binary.left);
+                Expression.write(out, binary.right);
+            }
+            default -> throw new IOException("can't write expression " + expression.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * Reads an expression written by {@link Expression#write(DataOutput, Expression)}.
+     * @throws IllegalStateException if the data is malformed
+     */
+    static Expression read(ByteBuffer in) {
+        byte tag = in.get();
+        return switch (tag) {
+            case LONG -> new LongConstant(in.getLong());
+            case DOUBLE -> new DoubleConstant(in.getDouble());
+            case STRING -> new StringConstant(ProgramCodec.readString(in));
+            case SLOT -> new Slot(ProgramCodec.readString(in), in.getInt());
+            case INDEX -> new Index((Slot) Expression.read(in), Expression.read(in));
+            case LENGTH -> new Length((Slot) Expression.read(in));
+            case LONG_SLOT -> new LongSlot(ProgramCodec.readString(in), in.getInt());
+            case DOUBLE_SLOT -> new DoubleSlot(ProgramCodec.readString(in), in.getInt());
+            case LONG_ARITHMETIC -> new LongArithmetic((Binary) Expression.read(in));
+            case DOUBLE_ARITHMETIC -> new DoubleArithmetic((Binary) Expression.read(in));
+            case CONCAT -> new Concat((Add) Expression.read(in));
+            case ADD, SUBTRACT, MULTIPLY, DIVIDE, MODULO, POWER -> {
+                Expression left = Expression.read(in), right = Expression.read(in);
+                yield switch (tag) {
+                    case ADD -> new Add(left, right);
+                    case SUBTRACT -> new Subtract(left, right);
+                    case MULTIPLY -> new Multiply(left, right);
+                    case DIVIDE -> new Divide(left, right);
+                    case MODULO -> new Modulo(left, right);
+                    default -> new Power(left, right);
+                };
+            }
+            default -> throw new IllegalStateException("unknown expression");
+        };
+    }
+
+    /**
+     * Evaluates an expression into a standalone operator, for values that need to outlive the frame, i.e. return
+     * values.
+     */
+    static Operator toOperator(Expression expression, Frame frame) {
+        return switch (expression.kind(frame)) {
+            case Frame.LONG -> new Operator.NumberOperator(expression.getLong(frame));
+            case Frame.DOUBLE -> new Operator.NumberOperator(expression.getDouble(frame));
+            default -> new Operator.StringOperator(expression.getString(frame));
+        };
+    }
+
+    /**
+     * Stores the result of an expression into a frame slot, keeping numbers unboxed.
+     */
+    static void store(Expression expression, Frame frame, int slot) {
+        switch (expression.kind(frame)) {
+            case Frame.LONG -> frame.setLong(slot, expression.getLong(frame));
+            case Frame.DOUBLE -> frame.setDouble(slot, expression.getDouble(frame));
+            default -> frame.setObject(slot, expression.getString(frame));
+        }
+    }
+
+    /**
+     * Evaluates a constant expression into a single constant node; constants never read from the frame.
+     */
+    static Expression constant(Expression expression) {
+        return switch (expression.kind(null)) {
+            case Frame.LONG -> new LongConstant(expression.getLong(null));
+            case Frame.DOUBLE -> new DoubleConstant(expression.getDouble(null));
+            default -> new StringConstant(expression.getString(null));
+        };
+    }
+
+    /**
+     * Formats a numeric result the same way its boxed value would be.
+     */
+    static String numberString(Expression expression, Frame frame) {
+        return expression.kind(frame) == Frame.LONG ? Long.toString(expression.getLong(frame)) :
+                Double.toString(expression.getDouble(frame));
+    }
+
+    record LongConstant(long value) implements Expression {
+
+        @Override
+        public boolean isConstant() {
+            return true;
+        }
+
+        @Override
+        public byte staticKind(SlotKinds kinds) {
+            return Frame.LONG;
+        }
+
+        @Override
+        public byte kind(Frame frame) {
+            return Frame.LONG;
+        }
+
+        @Override
+        public long getLong(Frame frame) {
+            return this.value;
+        }
+
+        @Override
+        public double getDouble(Frame frame) {
+            return this.value;
+        }
+
+        @Override
+        public String getString(Frame frame) {
+            return Long.toString(this.value);
+        }
+
+        @Override
+        public String toString() {
+            return Long.toString(this.value);
+        }
+
+    }
+
+    record DoubleConstant(double value) implements Expression {
+
+        @Override
+        public boolean isConstant() {
+            return true;
+        }
+
+        @Override
+        public byte staticKind(SlotKinds kinds) {
+            return Frame.DOUBLE;
+        }
+
+        @Override
+        public byte kind(Frame frame) {
+            return Frame.DOUBLE;
+        }
+
+        @Override
+        public long getLong(Frame frame) {
+            return (long) this.value;
+        }
+
+        @Override
+        public double getDouble(Frame frame) {
+            return this.value;
+        }
+
+        @Override
+        public String getString(Frame frame) {
+            return Double.toString(this.value);
+        }
+
+        @Override
+        public String toString() {
+            return Double.toString(this.value);
+        }
+
+    }
+
+    record StringConstant(String value) implements Expression {
+
+        @Override
+        public boolean isConstant() {
+            return true;
+        }
+
+        @Override
+        public byte staticKind(SlotKinds kinds) {
+            return Frame.OBJECT;
+        }
+
+        @Override
+        public byte kind(Frame frame) {
+            return Frame.OBJECT;
+        }
+
+        @Override
+        public long getLong(Frame frame) {
+            return 0;
+        }
+
+        @Override
+        public double getDouble(Frame frame) {
+            return 0;
+        }
+
+        @Override
+        public String getString(Frame frame) {
+            return this.value;
+        }
+
+        @Override
+        public String toString() {
+            return "\"" + this.value + "\"";
+        }
+
+    }
+
+    /**
+     * A variable, resolved to its frame slot at compile time. Floats are widened and read as doubles, and anything
+     * that isn't a number is read as a string.
+     */
+    record Slot(String name, int slot) implements Expression {
+
+        @Override
+        public byte kind(Frame frame) {
+            return switch (frame.kind(this.slot)) {
+                case Frame.LONG -> Frame.LONG;
+                case Frame.DOUBLE, Frame.FLOAT -> Frame.DOUBLE;
+                default -> Frame.OBJECT;
+            };
+        }
+
+        @Override
+        public long getLong(Frame frame) {
+            return frame.getLong(this.slot);
+        }
+
+        @Override
+        public double getDouble(Frame frame) {
+            return frame.getDouble(this.slot);
+        }
+
+        @Override
+        public String getString(Frame frame) {
+            return switch (frame.kind(this.slot)) {
+                case Frame.LONG -> Long.toString(frame.getLong(this.slot));
+                case Frame.DOUBLE, Frame.FLOAT -> Double.toString(frame.getDouble(this.slot));
+                default -> frame.getString(this.slot);
+            };
+        }
+
+        @Override
+        public byte staticKind(SlotKinds kinds) {
+            return kinds.get(this.slot);
+        }
+
+        @Override
+        public Expression specialize(SlotKinds kinds) {
+            return switch (kinds.get(this.slot)) {
+                case Frame.LONG -> new LongSlot(this.name, this.slot);
+                case Frame.DOUBLE -> new DoubleSlot(this.name, this.slot);
+                default -> this;
+            };
+        }
+
+        @Override
+        public String toString() {
+            return this.name;
+        }
+
+    }
+
+    /**
+     * A variable proven to always hold a long, see {@link SlotKinds}.
+     */
+    record LongSlot(String name, int slot) implements Expression {
+
+        @Override
+        public byte kind(Frame frame) {
+            return Frame.LONG;
+        }
+
+        @Override
+        public long getLong(Frame frame) {
+            return frame.longValue(this.slot);
+        }
+
+        @Override
+        public double getDouble(Frame frame) {
+            return frame.longValue(this.slot);
+        }
+
+        @Override
+        public String getString(Frame frame) {
+            return Long.toString(frame.longValue(this.slot));
+        }
+
+        @Override
+        public byte staticKind(SlotKinds kinds) {
+            return Frame.LONG;
+        }
+
+        @Override
+        public String toString() {
+            return this.name;
+        }
+
+    }
+
+    /**
+     * A variable proven to always hold a double or float, see {@link SlotKinds}.
+     */
+    record DoubleSlot(String name, int slot) implements Expression {
+
+        @Override
+        public byte kind(Frame frame) {
+            return Frame.DOUBLE;
+        }
+
+        @Override
+        public long getLong(Frame frame) {
+            return (long) frame.doubleValue(this.slot);
+        }
+
+        @Override
+        public double getDouble(Frame frame) {
+            return frame.doubleValue(this.slot);
+        }
+
+        @Override
+        public String getString(Frame frame) {
+            return Double.toString(frame.doubleValue(this.slot));
+        }
+
+        @Override
+        public byte staticKind(SlotKinds kinds) {
+            return Frame.DOUBLE;
+        }
+
+        @Override
+        public String toString() {
+            return this.name;
+        }
+
+    }
+
+    /**
+     * Element of a list, or value of a map by its key converted to a string. Reads of missing elements give the same
+     * value as an unset variable of the element type would.
+     */
+    class Index implements Expression {
+
+        private final Slot container;
+        private Expression index;
+
+        public Index(Slot container, Expression index) {
+            this.container = container;
+            this.index = index;
+        }
+
+        @Override
+        public byte kind(Frame frame) {
+            return switch (frame.getObject(this.container.slot())) {
+                case AliasList list -> list.kind();
+                case AliasMap map -> map.kind();
+                case null, default -> Frame.OBJECT;
+            };
+        }
+
+        @Override
+        public long getLong(Frame frame) {
+            return switch (frame.getObject(this.container.slot())) {
+                case AliasList list -> list.getLong(this.index.getLong(frame));
+                case AliasMap map -> map.getLong(this.index.getString(frame));
+                case null, default -> 0;
+            };
+        }
+
+        @Override
+        public double getDouble(Frame frame) {
+            return switch (frame.getObject(this.container.slot())) {
+                case AliasList list -> list.getDouble(this.index.getLong(frame));
+                case AliasMap map -> map.getDouble(this.index.getString(frame));
+                case null, default -> 0;
+            };
+        }
+
+        @Override
+        public String getString(Frame frame) {
+            return switch (frame.getObject(this.container.slot())) {
+                case AliasList list -> list.getString(this.index.getLong(frame));
+                case AliasMap map -> map.getString(this.index.getString(frame));
+                case null, default -> "";
+            };
+        }
+
+        @Override
+        public Expression fold() {
+            this.index = this.index.fold();
+            return this;
+        }
+
+        @Override
+        public byte staticKind(SlotKinds kinds) {
+            return kinds.getElements(this.container.slot());
+        }
+
+        @Override
+        public Expression specialize(SlotKinds kinds) {
+            return new Index(this.container, this.index.specialize(kinds));
+        }
+
+        @Override
+        public String toString() {
+            return this.container + "[" + this.index + "]";
+        }
+
+    }
+
+    /**
+     * Number of elements in a list or entries in a map.
+     */
+    record Length(Slot container) implements Expression {
+
+        @Override
+        public byte kind(Frame frame) {
+            return Frame.LONG;
+        }
+
+        @Override
+        public byte staticKind(SlotKinds kinds) {
+            return Frame.LONG;
+        }
+
+        @Override
+        public long getLong(Frame frame) {
+            return switch (frame.getObject(this.container.slot())) {
+                case AliasList list -> list.size();
+                case AliasMap map -> map.size();
+                case null, default -> 0;
+            };
+        }
+
+        @Override
+        public double getDouble(Frame frame) {
+            return this.getLong(frame);
+        }
+
+        @Override
+        public String getString(Frame frame) {
+            return Long.toString(this.getLong(frame));
+        }
+
+        @Override
+        public String toString() {
+            return "len(" + this.container + ")";
+        }
+
+    }
+
+    /**
+     * Base for binary arithmetic; operates on longs when both sides are longs and on doubles otherwise.
+     */
+    abstract class Binary implements Expression {
+
+        protected Expression left;
+        protected Expression right;
+        private final String symbol;
+
+        protected Binary(Expression left, Expression right, String symbol) {
+            this.left = left;
+            this.right = right;
+            this.symbol = symbol;
+        }
+
+        protected abstract long apply(long a, long b);
+        protected abstract double apply(double a, double b);
+
+        @Override
+        public byte kind(Frame frame) {
+            byte l = this.left.kind(frame), r = this.right.kind(frame);
+            if (l == Frame.OBJECT || r == Frame.OBJECT) {
+                return Frame.OBJECT;
+            }
+            return l == Frame.LONG && r == Frame.LONG ? Frame.LONG : Frame.DOUBLE;
+        }
+
+        @Override
+        public long getLong(Frame frame) {
+            if (this.left.kind(frame) == Frame.LONG && this.right.kind(frame) == Frame.LONG) {
+                return this.apply(this.left.getLong(frame), this.right.getLong(frame));
+            }
+            return (long) this.apply(this.left.getDouble(frame), this.right.getDouble(frame));
+        }
+
+        @Override
+        public double getDouble(Frame frame) {
+            if (this.left.kind(frame) == Frame.LONG && this.right.kind(frame) == Frame.LONG) {
+                return this.apply(this.left.getLong(frame), this.right.getLong(frame));
+            }
+            return this.apply(this.left.getDouble(frame), this.right.getDouble(frame));
+        }
+
+        @Override
+        public String getString(Frame frame) {
+            return Expression.numberString(this, frame);
+        }
+
+        /**
+         * Folds children in place; integer division by a constant zero is left to fail at runtime as before.
+         */
+        @Override
+        public Expression fold() {
+            this.left = this.left.fold();
+            this.right = this.right.fold();
+            if (this.left.isConstant() && this.right.isConstant()) {
+                try {
+                    return Expression.constant(this);
+                }
+                catch (ArithmeticException e) {
+                    return this;
+                }
+            }
+            return this;
+        }
+
+        @Override
+        public byte staticKind(SlotKinds kinds) {
+            return SlotKinds.arithmetic(this.left.staticKind(kinds), this.right.staticKind(kinds));
+        }
+
+        /**
+         * Numeric results are computed on the kind they're known to have; strings and kinds that are only known at
+         * runtime are left to be decided as before.
+         */
+        @Override
+        public Expression specialize(SlotKinds kinds) {
+            Binary binary = Expression.binary(this.symbol, this.left.specialize(kinds), this.right.specialize(kinds));
+            return switch (this.staticKind(kinds)) {
+                case Frame.LONG -> new LongArithmetic(binary);
+                case Frame.DOUBLE -> new DoubleArithmetic(binary);
+                default -> binary;
+            };
+        }
+
+        @Override
+        public String toString() {
+            return "(" + this.left + " " + this.symbol + " " + this.right + ")";
+        }
+
+    }
+
+    /**
+     * Addition, or concatenation if either side is a string.
+     */
+    class Add extends Binary {
+
+        public Add(Expression left, Expression right) {
+            super(left, right, "+");
+        }
+
+        @Override
+        protected long apply(long a, long b) {
+            return a + b;
+        }
+
+        @Override
+        protected double apply(double a, double b) {
+            return a + b;
+        }
+
+        @Override
+        public String getString(Frame frame) {
+            if (this.kind(frame) != Frame.OBJECT) {
+                return super.getString(frame);
+            }
+            return this.left.getString(frame) + this.right.getString(frame);
+        }
+
+        @Override
+        public Expression specialize(SlotKinds kinds) {
+            Expression specialized = super.specialize(kinds);
+            return specialized instanceof Add add && this.staticKind(kinds) == Frame.OBJECT ? new Concat(add) :
+                    specialized;
+        }
+
+    }
+
+    class Subtract extends Binary {
+
+        public Subtract(Expression left, Expression right) {
+            super(left, right, "-");
+        }
+
+        @Override
+        protected long apply(long a, long b) {
+            return a - b;
+        }
+
+        @Override
+        protected double apply(double a, double b) {
+            return a - b;
+        }
+
+    }
+
+    class Multiply extends Binary {
+
+        public Multiply(Expression left, Expression right) {
+            super(left, right, "*");
+        }
+
+        @Override
+        protected long apply(long a, long b) {
+            return a * b;
+        }
+
+        @Override
+        protected double apply(double a, double b) {
+            return a * b;
+        }
+
+    }
+
+    class Divide extends Binary {
+
+        public Divide(Expression left, Expression right) {
+            super(left, right, "/");
+        }
+
+        @Override
+        protected long apply(long a, long b) {
+            return a / b;
+        }
+
+        @Override
+        protected double apply(double a, double b) {
+            return a / b;
+        }
+
+    }
+
+    class Modulo extends Binary {
+
+        public Modulo(Expression left, Expression right) {
+            super(left, right, "%");
+        }
+
+        @Override
+        protected long apply(long a, long b) {
+            return a % b;
+        }
+
+        @Override
+        protected double apply(double a, double b) {
+            return a % b;
+        }
+
+    }
+
+    /**
+     * Exponentiation, which always produces a double.
+     */
+    class Power extends Binary {
+
+        public Power(Expression left, Expression right) {
+            super(left, right, "^");
+        }
+
+        @Override
+        protected long apply(long a, long b) {
+            return (long) Math.pow(a, b);
+        }
+
+        @Override
+        protected double apply(double a, double b) {
+            return Math.pow(a, b);
+        }
+
+        @Override
+        public byte kind(Frame frame) {
+            return super.kind(frame) == Frame.OBJECT ? Frame.OBJECT : Frame.DOUBLE;
+        }
+
+        @Override
+        public byte staticKind(SlotKinds kinds) {
+            byte kind = super.staticKind(kinds);
+            return kind == Frame.LONG ? Frame.DOUBLE : kind;
+        }
+
+        @Override
+        public double getDouble(Frame frame) {
+            return Math.pow(this.left.getDouble(frame), this.right.getDouble(frame));
+        }
+
+        @Override
+        public long getLong(Frame frame) {
+            return (long) this.getDouble(frame);
+        }
+
+    }
+
+    /**
+     * Arithmetic proven to always be done on longs.
+     * @param operation operation whose operands are read
+     */
+    record LongArithmetic(Binary operation) implements Expression {
+
+        @Override
+        public byte kind(Frame frame) {
+            return Frame.LONG;
+        }
+
+        @Override
+        public long getLong(Frame frame) {
+            return this.operation.apply(this.operation.left.getLong(frame), this.operation.right.getLong(frame));
+        }
+
+        @Override
+        public double getDouble(Frame frame) {
+            return this.getLong(frame);
+        }
+
+        @Override
+        public String getString(Frame frame) {
+            return Long.toString(this.getLong(frame));
+        }
+
+        @Override
+        public byte staticKind(SlotKinds kinds) {
+            return Frame.LONG;
+        }
+
+        @Override
+        public String toString() {
+            return this.operation.toString();
+        }
+
+    }
+
+    /**
+     * Arithmetic proven to always be done on doubles, i.e. with at least one double operand or exponentiation.
+     * @param operation operation whose operands are read
+     */
+    record DoubleArithmetic(Binary operation) implements Expression {
+
+        @Override
+        public byte kind(Frame frame) {
+            return Frame.DOUBLE;
+        }
+
+        @Override
+        public long getLong(Frame frame) {
+            return (long) this.getDouble(frame);
+        }
+
+        @Override
+        public double getDouble(Frame frame) {
+            return this.operation.apply(this.operation.left.getDouble(frame), this.operation.right.getDouble(frame));
+        }
+
+        @Override
+        public String getString(Frame frame) {
+            return Double.toString(this.getDouble(frame));
+        }
+
+        @Override
+        public byte staticKind(SlotKinds kinds) {
+            return Frame.DOUBLE;
+        }
+
+        @Override
+        public String toString() {
+            return this.operation.toString();
+        }
+
+    }
+
+    /**
+     * Addition proven to always be concatenation. Read as a number, it gives what the unspecialized addition would.
+     */
+    record Concat(Add operation) implements Expression {
+
+        @Override
+        public byte kind(Frame frame) {
+            return Frame.OBJECT;
+        }
+
+        @Override
+        public long getLong(Frame frame) {
+            return (long) this.getDouble(frame);
+        }
+
+        @Override
+        public double getDouble(Frame frame) {
+            return this.operation.left.getDouble(frame) + this.operation.right.getDouble(frame);
+        }
+
+        @Override
+        public String getString(Frame frame) {
+            return this.operation.left.getString(frame) + this.operation.right.getString(frame);
+        }
+
+        @Override
+        public byte staticKind(SlotKinds kinds) {
+            return Frame.OBJECT;
+        }
+
+        @Override
+        public String toString() {
+            return this.operation.toString();
+        }
+
+    }
+
+}
@@ -1,7 +1,6 @@
 package com.birblett.impl.command.alias.language;
 
 import java.util.*;
-import java.util.regex.Matcher;
 
 /**
  * Contains methods and values for parsing expressions i.e. for if/let/return statements
@@ -11,83 +10,90 @@ public interface ExpressionParser {
     record ExpressionOperator(String op, int precedence) {}
 
     default Integer parseExpression(String expr, Integer type, List<LinkedHashMap<String, Variable.Definition>> vars, Queue<Object> post) {
+        List<Lexer.Token> tokens = this.tokenize(expr);
+        return tokens != null ? this.parseTokens(expr, tokens, 0, tokens.size(), type, vars, post) : null;
+    }
+
+    /**
+     * @return the tokens of an expression, or null if it contains something that isn't a token
+     */
+    default List<Lexer.Token> tokenize(String expr) {
+        List<Lexer.Token> tokens = Lexer.tokenize(expr);
+        Lexer.Token invalid = Lexer.invalid(tokens);
+        if (invalid != null) {
+            this.error(invalid.text() + Lexer.at(expr, invalid.start()));
+            return null;
+        }
+        return tokens;
+    }
+
+    /**
+     * Parses a range of tokens into postfix order.
+     * @param expr source the tokens are from, for error messages
+     * @return the inferred type, or null if the expression is invalid
+     */
+    default Integer parseTokens(String expr, List<Lexer.Token> tokens, int from, int to, Integer type, List<LinkedHashMap<String, Variable.Definition>> vars, Queue<Object> post) {
         int inferredType = type != null ? type : 0;
         Stack<ExpressionOperator> stack = new Stack<>();
-        Matcher m = AliasConstants.TOKEN.matcher(expr);
+        Stack<Lexer.Token> open = new Stack<>();
         boolean lastOperand = true;
         int depth = 0;
-        while (m.find()) {
-            String token = m.group();
-            if (token.startsWith("\"") && token.endsWith("\"")) {
-                if (type == null) {
-                    inferredType = 4;
-                } else if (type < 4) {
-                    this.error("can't forcibly coerce string type to numerical value");
-                    return null;
-                }
-            }
-            switch (token) {
-                case " " -> {
-                }
-                case "(" -> {
+        for (int i = from; i < to; i++) {
+            Lexer.Token token = tokens.get(i);
+            switch (token.kind()) {
+                case OPEN_PAREN -> {
                     if (!lastOperand) {
-                        this.error("operand can't directly follow another operand");
+                        this.error("operand can't directly follow another operand" + Lexer.at(expr, token.start()));
                         return null;
                     }
+                    open.push(token);
                     depth++;
                 }
-                case ")" -> {
+                case CLOSE_PAREN -> {
+                    if (open.isEmpty()) {
+                        this.error("unmatched \")\"" + Lexer.at(expr, token.start()));
+                        return null;
+                    }
                     if (lastOperand) {
-                        this.error("operator can't directly follow another operator");
+                        this.error("operator can't directly follow another operator" + Lexer.at(expr, token.start()));
                         return null;
                     }
+                    open.pop();
                     depth--;
                 }
-                case "+", "-", "*", "/", "^", "%" -> {
+                case OPERATOR -> {
                     if (lastOperand) {
-                        this.error("operator can't directly follow another operator");
+                        this.error("operator can't directly follow another operator" + Lexer.at(expr, token.start()));
                         return null;
                     }
                     lastOperand = true;
-                    int p = AliasConstants.PRECEDENCE.get(token) + 3 * depth;
+                    int p = AliasConstants.PRECEDENCE.get(token.text()) + 3 * depth;
                     while (!stack.isEmpty() && stack.peek().precedence >= p) {
                         post.add(stack.pop().op);
                     }
-                    stack.push(new ExpressionOperator(token, p));
+                    stack.push(new ExpressionOperator(token.text(), p));
                 }
-                default -> {
+                case NUMBER, STRING, IDENTIFIER -> {
                     if (!lastOperand) {
-                        this.error("operand can't directly follow another operand");
+                        this.error("operand can't directly follow another operand" + Lexer.at(expr, token.start()));
                         return null;
                     }
-                    Operator.NumberOperator num = Operator.NumberOperator.fromString(token);
-                    if (num == null) {
-                        if (token.startsWith("\"") && token.endsWith("\"")) {
+                    if (token.kind() == Lexer.Kind.STRING) {
+                        if (type == null) {
                             inferredType = 4;
-                            post.add(new Operator.StringOperator(token.substring(1, token.length() - 1)));
-                        } else {
-                            boolean valid = false;
-                            for (LinkedHashMap<String, Variable.Definition> varMap : vars) {
-                                if (varMap.containsKey(token)) {
-                                    valid = true;
-                                    inferredType = Math.max(inferredType, AliasConstants.TYPE_MAP.getOrDefault(varMap.get(token).type.clazz(), 4));
-                                    post.add(token);
-                                    break;
-                                }
-                            }
-                            if (!valid) {
-                                this.error("no declaration/forward reference of variable \"" + token + "\"");
-                                return null;
-                            }
+                        } else if (type < 4) {
+                            this.error("can't forcibly coerce string type to numerical value" + Lexer.at(expr, token.start()));
+                            return null;
                         }
-                    } else {
+                        post.add(new Expression.StringConstant(token.text().substring(1, token.text().length() - 1)));
+                    } else if (token.kind() == Lexer.Kind.NUMBER) {
+                        Operator.NumberOperator num = token.number();
                         if (type == null) {
-                            Number n = (Number) num.getValue();
-                            if (token.endsWith("f")) {
+                            if (token.isFloat()) {
                                 inferredType = 2;
                             } else {
-                                if (inferredType != 0 || n.intValue() != num.getDoubleValue()) {
-                                    if (inferredType <= 1 && n.longValue() == num.getDoubleValue()) {
+                                if (inferredType != 0 || (int) num.getLongValue() != num.getDoubleValue()) {
+                                    if (inferredType <= 1 && num.getLongValue() == num.getDoubleValue()) {
                                         inferredType = 1;
                                     } else {
                                         inferredType = 3;
@@ -95,21 +101,70 @@ public interface ExpressionParser {
                                 }
                             }
                         }
-                        post.add(num);
+                        post.add(num.isLong() ? new Expression.LongConstant(num.getLongValue()) :
+                                new Expression.DoubleConstant(num.getDoubleValue()));
+                    } else if (token.text().equals("len") && i + 1 < to && tokens.get(i + 1).kind() == Lexer.Kind.OPEN_PAREN) {
+                        if (i + 3 >= to || tokens.get(i + 2).kind() != Lexer.Kind.IDENTIFIER || tokens.get(i + 3).kind() != Lexer.Kind.CLOSE_PAREN) {
+                            this.error("len should be of form len(var)" + Lexer.at(expr, token.start()));
+                            return null;
+                        }
+                        String name = tokens.get(i + 2).text();
+                        Variable.Definition def = Variable.Definition.find(name, vars);
+                        if (def == null || !def.isCollection()) {
+                            this.error("len() takes a list or map, got \"" + name + "\"" + Lexer.at(expr, tokens.get(i + 2).start()));
+                            return null;
+                        }
+                        inferredType = Math.max(inferredType, 1);
+                        post.add(new Expression.Length(new Expression.Slot(name, def.slot)));
+                        i += 3;
+                    } else {
+                        String name = token.text();
+                        Variable.Definition def = Variable.Definition.find(name, vars);
+                        if (def == null) {
+                            this.error("no declaration/forward reference of variable \"" + name + "\"" + Lexer.at(expr, token.start()));
+                            return null;
+                        }
+                        if (def.isCollection()) {
+                            // the index is parsed on its own so its type doesn't affect the type of the expression
+                            int close = i + 1 < to && tokens.get(i + 1).kind() == Lexer.Kind.OPEN_BRACKET ? Lexer.closing(tokens, i + 1, to) : -1;
+                            if (close == -1) {
+                                this.error(def.typeName + " \"" + name + "\" must be indexed as " + name + "[index] or measured with len(" + name + ")" + Lexer.at(expr, token.start()));
+                                return null;
+                            }
+                            Expression index = this.parseIndex(def, expr, tokens, i + 2, close, vars);
+                            if (index == null) {
+                                return null;
+                            }
+                            inferredType = Math.max(inferredType, def.elementType());
+                            post.add(new Expression.Index(new Expression.Slot(name, def.slot), index));
+                            i = close;
+                        } else {
+                            inferredType = Math.max(inferredType, AliasConstants.TYPE_MAP.getOrDefault(def.type.clazz(), 4));
+                            post.add(new Expression.Slot(name, def.slot));
+                        }
                     }
                     lastOperand = false;
                 }
+                case OPEN_BRACKET, CLOSE_BRACKET -> {
+                    this.error("only lists and maps can be indexed, and brackets must be matched" + Lexer.at(expr, token.start()));
+                    return null;
+                }
+                default -> {
+                    this.error("unexpected \"" + token.text() + "\"" + Lexer.at(expr, token.start()));
+                    return null;
+                }
             }
         }
         if (lastOperand) {
-            this.error("expression contains operator without operand");
+            this.error(from == to ? "expected an expression" + Lexer.at(expr, from < tokens.size() ? tokens.get(from).start() : expr.length()) :
+                    "expression contains operator without operand" + Lexer.at(expr, tokens.get(to - 1).start()));
             return null;
         }
         while (!stack.isEmpty()) {
             post.add(stack.pop().op);
         }
-        if (depth != 0) {
-            this.error("mismatched parentheses in expression");
+        if (!open.isEmpty()) {
+            this.error("unmatched \"(\"" + Lexer.at(expr, open.peek().start()));
             return null;
         }
         boolean hasString = false;
@@ -117,47 +172,42 @@ public interface ExpressionParser {
         for (Object o : post) {
             if (o instanceof String s && "-*/^%".contains(s)) {
                 hasNonAddition = true;
-            } else if (o instanceof Operator.StringOperator) {
+            } else if (o instanceof Expression.StringConstant) {
                 inferredType = 4;
                 hasString = true;
             }
         }
         if (hasString && hasNonAddition) {
-            this.error("string type only supports concatenation");
+            this.error("string type only supports concatenation" + Lexer.at(expr, tokens.get(from).start()));
             return null;
         }
         return inferredType;
     }
 
-    default Operator evaluate(Queue<Object> post, LinkedHashMap<String, Variable> variables) {
-        Queue<Object> postfix = new LinkedList<>(post);
-        Stack<Operator> eval = new Stack<>();
-        if (!postfix.isEmpty()) {
-            while (!postfix.isEmpty()) {
-                Object o = postfix.poll();
-                if (o instanceof String tok) {
-                    if ("+-*/^%".contains(tok)) {
-                        switch (tok) {
-                            case "*", "+", "^", "%" -> eval.push(eval.pop().operation(tok, eval.pop()));
-                            case "/", "-" -> {
-                                Operator arg = eval.pop();
-                                eval.push(eval.pop().operation(tok, arg));
-                            }
-                        }
-                    } else {
-                        Variable v = variables.get(tok);
-                        if (Number.class.isAssignableFrom(v.type().type.clazz())) {
-                            eval.push(new Operator.NumberOperator((Number) v.value()));
-                        } else {
-                            eval.push(new Operator.StringOperator(v.value().toString()));
-                        }
-                    }
-                } else if (o instanceof Operator op) {
-                    eval.push(op);
-                }
-            }
+    /**
+     * Parses the index of a list or key of a map.
+     * @param def list or map being indexed
+     * @return the index expression, or null if it is invalid
+     */
+    default Expression parseIndex(Variable.Definition def, String index, List<LinkedHashMap<String, Variable.Definition>> vars) {
+        List<Lexer.Token> tokens = this.tokenize(index);
+        return tokens != null ? this.parseIndex(def, index, tokens, 0, tokens.size(), vars) : null;
+    }
+
+    /**
+     * Parses the index of a list or key of a map from a range of tokens.
+     */
+    default Expression parseIndex(Variable.Definition def, String expr, List<Lexer.Token> tokens, int from, int to, List<LinkedHashMap<String, Variable.Definition>> vars) {
+        Queue<Object> post = new LinkedList<>();
+        Integer type = this.parseTokens(expr, tokens, from, to, null, vars, post);
+        if (type == null) {
+            return null;
+        }
+        if ("list".equals(def.typeName) && type > 1) {
+            this.error("list \"" + def.name + "\" must be indexed by an integer" + Lexer.at(expr, tokens.get(from).start()));
+            return null;
         }
-        return eval.peek();
+        return Expression.fromPostfix(post);
     }
 
     void error(String s);
@@ -0,0 +1,191 @@
+package com.birblett.impl.command.alias.language;
+
+/**
+ * Variable storage for a single alias execution. Every variable is resolved to a fixed slot index at compile time;
+ * integral and floating point values are kept in primitive arrays so arithmetic on them never boxes.
+ */
+public class Frame {
+
+    public static final byte UNSET = 0;
+    public static final byte LONG = 1;
+    public static final byte DOUBLE = 2;
+    public static final byte FLOAT = 3;
+    public static final byte OBJECT = 4;
+
+    private final byte[] kinds;
+    private final long[] longs;
+    private final double[] doubles;
+    private final Object[] objects;
+    private Operator returnValue = null;
+    private boolean returned = false;
+
+    public Frame(int size) {
+        this.kinds = new byte[size];
+        this.longs = new long[size];
+        this.doubles = new double[size];
+        this.objects = new Object[size];
+    }
+
+    public int size() {
+        return this.kinds.length;
+    }
+
+    public byte kind(int slot) {
+        return this.kinds[slot];
+    }
+
+    public boolean isSet(int slot) {
+        return this.kinds[slot] != UNSET;
+    }
+
+    public boolean isNumber(int slot) {
+        return this.kinds[slot] == LONG || this.kinds[slot] == DOUBLE || this.kinds[slot] == FLOAT;
+    }
+
+    public boolean isLong(int slot) {
+        return this.kinds[slot] == LONG;
+    }
+
+    public void setLong(int slot, long value) {
+        this.kinds[slot] = LONG;
+        this.longs[slot] = value;
+        this.objects[slot] = null;
+    }
+
+    public void setDouble(int slot, double value) {
+        this.kinds[slot] = DOUBLE;
+        this.doubles[slot] = value;
+        this.objects[slot] = null;
+    }
+
+    public void setFloat(int slot, float value) {
+        this.kinds[slot] = FLOAT;
+        this.doubles[slot] = value;
+        this.objects[slot] = null;
+    }
+
+    public void setObject(int slot, Object value) {
+        this.kinds[slot] = OBJECT;
+        this.objects[slot] = value;
+    }
+
+    /**
+     * Stores a boxed value, unboxing numbers into their primitive slot.
+     */
+    public void set(int slot, Object value) {
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            this.setLong(slot, ((Number) value).longValue());
+        }
+        else if (value instanceof Float f) {
+            this.setFloat(slot, f);
+        }
+        else if (value instanceof Number n) {
+            this.setDouble(slot, n.doubleValue());
+        }
+        else {
+            this.setObject(slot, value);
+        }
+    }
+
+    public long getLong(int slot) {
+        return switch (this.kinds[slot]) {
+            case LONG -> this.longs[slot];
+            case DOUBLE, FLOAT -> (long) this.doubles[slot];
+            default -> 0;
+        };
+    }
+
+    public double getDouble(int slot) {
+        return switch (this.kinds[slot]) {
+            case LONG -> this.longs[slot];
+            case DOUBLE, FLOAT -> this.doubles[slot];
+            default -> 0;
+        };
+    }
+
+    /**
+     * Reads a slot proven to hold a long without checking its kind, see {@link SlotKinds}.
+     */
+    public long longValue(int slot) {
+        return this.longs[slot];
+    }
+
+    /**
+     * Reads a slot proven to hold a double or float without checking its kind, see {@link SlotKinds}.
+     */
+    public double doubleValue(int slot) {
+        return this.doubles[slot];
+    }
+
+    /**
+     * @return the object in a slot, or null if it holds a number or nothing
+     */
+    public Object getObject(int slot) {
+        return this.kinds[slot] == OBJECT ? this.objects[slot] : null;
+    }
+
+    /**
+     * @return the boxed value of a slot; only meant for code that is not performance sensitive
+     */
+    public Object get(int slot) {
+        return switch (this.kinds[slot]) {
+            case LONG -> this.longs[slot];
+            case DOUBLE -> this.doubles[slot];
+            case FLOAT -> (float) this.doubles[slot];
+            default -> this.objects[slot] instanceof StringBuilder builder ? builder.toString() : this.objects[slot];
+        };
+    }
+
+    /**
+     * Appends the string form of a slot, formatted the same as its boxed value, without boxing.
+     */
+    public void append(int slot, StringBuilder builder) {
+        switch (this.kinds[slot]) {
+            case LONG -> builder.append(this.longs[slot]);
+            case DOUBLE -> builder.append(this.doubles[slot]);
+            case FLOAT -> builder.append((float) this.doubles[slot]);
+            default -> builder.append(this.objects[slot] instanceof CharSequence chars ? chars : String.valueOf(this
+                    .objects[slot]));
+        }
+    }
+
+    /**
+     * Appends to the string in a slot in place. The slot then holds a builder, so repeated appends to the same
+     * variable don't copy what it already holds; the builder never leaves the frame, since every read of the slot
+     * gives a string and substituting it into a command copies straight from it.
+     */
+    public void appendString(int slot, String value) {
+        if (this.kinds[slot] == OBJECT && this.objects[slot] instanceof StringBuilder builder) {
+            builder.append(value);
+        }
+        else {
+            this.setObject(slot, new StringBuilder(this.getString(slot)).append(value));
+        }
+    }
+
+    /**
+     * Records the value of a [return], which may be null if nothing was returned.
+     */
+    public void setReturnValue(Operator value) {
+        this.returnValue = value;
+        this.returned = true;
+    }
+
+    public Operator getReturnValue() {
+        return this.returnValue;
+    }
+
+    public boolean hasReturned() {
+        return this.returned;
+    }
+
+    public String getString(int slot) {
+        return switch (this.kinds[slot]) {
+            case LONG -> Long.toString(this.longs[slot]);
+            case DOUBLE -> Double.toString(this.doubles[slot]);
+            case FLOAT -> Float.toString((float) this.doubles[slot]);
+            default -> String.valueOf(this.objects[slot]);
+        };
+    }
+
+}
@@ -1,35 +1,269 @@
 package com.birblett.impl.command.alias.language;
 
 import com.birblett.accessor.command.CommandSourceModifier;
+import com.birblett.impl.command.alias.AliasManager;
 import com.birblett.impl.command.alias.AliasedCommand;
+import com.birblett.util.ServerUtil;
+import com.birblett.util.TextUtils;
 import com.mojang.brigadier.context.CommandContext;
 import net.minecraft.server.command.ServerCommandSource;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.*;
 
 /**
- * Basic interface for all instructions - returns -1 by default on execution, basically a no-op.
+ * Basic interface for all instructions - returns -1 by default on execution, basically a no-op. [call] returns -4 for
+ * the interpreter to enter the called alias. Instructions that send an error and stop the alias return -5, which
+ * unlike -2 from [return] leaves no result to cache.
  */
 public interface Instruction {
 
-    default int execute(AliasedCommand aliasedCommand, CommandContext<ServerCommandSource> context, LinkedHashMap<String, Variable> variables) {
+    default int execute(AliasedCommand aliasedCommand, CommandContext<ServerCommandSource> context, Frame frame) {
         return -1;
     }
 
+    /**
+     * Records the kinds of the values this stores into frame slots, see {@link SlotKinds}.
+     */
+    default void recordKinds(SlotKinds kinds) {}
 
     /**
-     * Holds a single command; does text replacement for variables on execution.
-     * @param command
+     * @return this instruction with its expressions specialized to the proven kinds of the slots they read; a copy if
+     * anything changes, since instructions are shared with the compiler's output
      */
-    record Command(String command) implements Instruction {
+    default Instruction specialize(SlotKinds kinds) {
+        return this;
+    }
 
-        @Override
-        public int execute(AliasedCommand aliasedCommand, CommandContext<ServerCommandSource> context, LinkedHashMap<String, Variable> variables) {
-            String cmd = this.command;
-            for (String var : variables.keySet()) {
-                cmd = cmd.replaceAll("\\{\\$" + var + "}", variables.get(var).value().toString());
+    byte COMMAND = 0, LET = 1, JUMP = 2, IF = 3, RETURN = 4, SLEEP = 5, CALL = 6, FETCH = 7, DECLARE = 8, STORE = 9, FOR = 10, NEXT = 11;
+
+    /**
+     * Writes an optimized instruction in the format read by {@link Instruction#read(ByteBuffer)}. Only what is needed
+     * to run it is kept, so compiler-only instruction types are written as their runtime equivalent.
+     */
+    static void write(DataOutput out, Instruction instruction) throws IOException {
+        switch (instruction) {
+            case Command command -> {
+                out.writeByte(COMMAND);
+                ProgramCodec.writeString(out, command.command);
+                ProgramCodec.writeStrings(out, command.segments);
+                ProgramCodec.writeStrings(out, command.names);
+                for (int slot : command.slots) {
+                    out.writeInt(slot);
+                }
+            }
+            case Let let -> {
+                out.writeByte(LET);
+                ProgramCodec.writeString(out, let.assignVar);
+                out.writeInt(let.type);
+                out.writeInt(let.slot);
+                out.writeByte(let.kind);
+                out.writeBoolean(let.append);
+                Expression.write(out, let.expression);
+            }
+            case If condition -> {
+                out.writeByte(IF);
+                out.writeInt(condition.jumpTo);
+                ProgramCodec.writeString(out, condition.name);
+                ProgramCodec.writeString(out, condition.cmp);
+                out.writeInt(condition.comparator);
+                out.writeBoolean(condition.negated);
+                out.writeByte(condition.kind);
+                Expression.write(out, condition.left);
+                Expression.write(out, condition.right);
+            }
+            case For loop -> {
+                out.writeByte(FOR);
+                out.writeInt(loop.jumpTo);
+                ProgramCodec.writeString(out, loop.name);
+                out.writeInt(loop.slot);
+                out.writeInt(loop.boundSlot);
+                out.writeInt(loop.stepSlot);
+                Expression.write(out, loop.from);
+                Expression.write(out, loop.to);
+                Expression.write(out, loop.step);
+            }
+            case Next next -> {
+                out.writeByte(NEXT);
+                out.writeInt(next.jumpTo);
+                ProgramCodec.writeString(out, next.name);
+                out.writeInt(next.slot);
+                out.writeInt(next.boundSlot);
+                out.writeInt(next.stepSlot);
+            }
+            case Jump jump -> {
+                out.writeByte(JUMP);
+                out.writeInt(jump.jumpTo);
+            }
+            case Return ret -> {
+                out.writeByte(RETURN);
+                out.writeInt(ret.inferredType);
+                out.writeBoolean(ret.expression != null);
+                if (ret.expression != null) {
+                    Expression.write(out, ret.expression);
+                }
+            }
+            case Sleep sleep -> {
+                out.writeByte(SLEEP);
+                Expression.write(out, sleep.ticks);
+            }
+            case Call call -> {
+                out.writeByte(CALL);
+                ProgramCodec.writeString(out, call.target);
+                out.writeInt(call.arguments.length);
+                for (Expression argument : call.arguments) {
+                    Expression.write(out, argument);
+                }
+                out.writeBoolean(call.assign != null);
+                if (call.assign != null) {
+                    Instruction.write(out, call.assign);
+                }
+                out.writeInt(call.tailReturnMode);
+            }
+            case Fetch fetch -> {
+                out.writeByte(FETCH);
+                ProgramCodec.writeString(out, fetch.assignVar);
+                out.writeInt(fetch.type);
+                out.writeInt(fetch.slot);
+            }
+            case Declare declare -> {
+                out.writeByte(DECLARE);
+                ProgramCodec.writeString(out, declare.name);
+                out.writeBoolean(declare.map);
+                out.writeInt(declare.type);
+                out.writeInt(declare.slot);
+            }
+            case Store store -> {
+                out.writeByte(STORE);
+                ProgramCodec.writeString(out, store.name);
+                out.writeInt(store.slot);
+                out.writeBoolean(store.index != null);
+                if (store.index != null) {
+                    Expression.write(out, store.index);
+                }
+                Expression.write(out, store.value);
+            }
+            default -> throw new IOException("can't write instruction " + instruction.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * Reads an instruction written by {@link Instruction#write(DataOutput, Instruction)}.
+     * @throws IllegalStateException if the data is malformed
+     */
+    static Instruction read(ByteBuffer in) {
+        return switch (in.get()) {
+            case COMMAND -> {
+                String command = ProgramCodec.readString(in);
+                String[] segments = ProgramCodec.readStrings(in), names = ProgramCodec.readStrings(in);
+                int[] slots = new int[names.length];
+                for (int i = 0; i < slots.length; i++) {
+                    slots[i] = in.getInt();
+                }
+                yield new Command(command, segments, names, slots);
+            }
+            case LET -> new Let(ProgramCodec.readString(in), in.getInt(), in.getInt(), in.get(), in.get() != 0,
+                    Expression.read(in));
+            case IF -> new If(in.getInt(), ProgramCodec.readString(in), ProgramCodec.readString(in), in.getInt(),
+                    in.get() != 0, in.get(), Expression.read(in), Expression.read(in));
+            case JUMP -> new Jump(in.getInt());
+            case FOR -> new For(in.getInt(), ProgramCodec.readString(in), in.getInt(), in.getInt(), in.getInt(),
+                    Expression.read(in), Expression.read(in), Expression.read(in));
+            case NEXT -> new Next(in.getInt(), ProgramCodec.readString(in), in.getInt(), in.getInt(), in.getInt());
+            case RETURN -> new Return(in.getInt(), in.get() != 0 ? Expression.read(in) : null);
+            case SLEEP -> new Sleep(Expression.read(in));
+            case CALL -> {
+                String target = ProgramCodec.readString(in);
+                Expression[] arguments = new Expression[in.getInt()];
+                for (int i = 0; i < arguments.length; i++) {
+                    arguments[i] = Expression.read(in);
+                }
+                Fetch assign = in.get() != 0 ? (Fetch) Instruction.read(in) : null;
+                yield new Call(target, arguments, assign, in.getInt());
             }
-            return aliasedCommand.executeCommand(context, cmd) ? -1 : -2;
+            case FETCH -> new Fetch(ProgramCodec.readString(in), in.getInt(), in.getInt());
+            case DECLARE -> new Declare(ProgramCodec.readString(in), in.get() != 0, in.getInt(), in.getInt());
+            case STORE -> new Store(ProgramCodec.readString(in), in.getInt(), in.get() != 0 ? Expression.read(in) : null,
+                    Expression.read(in));
+            default -> throw new IllegalStateException("unknown instruction");
+        };
+    }
+
+
+    /**
+     * Holds a single command, pre-split at compile time into literal segments and the variable slots between them, so
+     * execution is a single append pass instead of a text replacement per variable. Only {$var} references to variables
+     * in scope at compile time become slots; anything else is kept as literal text.
+     */
+    class Command implements Instruction {
+
+        private final String command;
+        private final String[] segments;
+        private final String[] names;
+        private final int[] slots;
+
+        public Command(String command, List<LinkedHashMap<String, Variable.Definition>> vars) {
+            this.command = command;
+            List<String> segments = new ArrayList<>();
+            List<String> names = new ArrayList<>();
+            List<Integer> slots = new ArrayList<>();
+            int start = 0, literalStart = 0, open;
+            while ((open = command.indexOf("{$", start)) != -1) {
+                int close = command.indexOf('}', open + 2);
+                if (close == -1) {
+                    break;
+                }
+                String name = command.substring(open + 2, close);
+                for (LinkedHashMap<String, Variable.Definition> varMap : vars) {
+                    if (varMap.containsKey(name)) {
+                        segments.add(command.substring(literalStart, open));
+                        names.add(name);
+                        slots.add(varMap.get(name).slot);
+                        literalStart = close + 1;
+                        break;
+                    }
+                }
+                start = close + 1;
+            }
+            segments.add(command.substring(literalStart));
+            this.segments = segments.toArray(new String[0]);
+            this.names = names.toArray(new String[0]);
+            this.slots = slots.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        private Command(String command, String[] segments, String[] names, int[] slots) {
+            this.command = command;
+            this.segments = segments;
+            this.names = names;
+            this.slots = slots;
+        }
+
+        /**
+         * Fills each slot with the current value of its variable; slots that are unassigned at runtime keep their
+         * original {$var} text.
+         */
+        public String build(Frame frame) {
+            if (this.slots.length == 0) {
+                return this.command;
+            }
+            StringBuilder cmd = new StringBuilder(this.command.length() + 16 * this.slots.length);
+            for (int i = 0; i < this.slots.length; i++) {
+                cmd.append(this.segments[i]);
+                if (frame.isSet(this.slots[i])) {
+                    frame.append(this.slots[i], cmd);
+                }
+                else {
+                    cmd.append("{$").append(this.names[i]).append('}');
+                }
+            }
+            return cmd.append(this.segments[this.slots.length]).toString();
+        }
+
+        @Override
+        public int execute(AliasedCommand aliasedCommand, CommandContext<ServerCommandSource> context, Frame frame) {
+            return aliasedCommand.executeCommand(context, this.build(frame)) ? -1 : -5;
         }
 
         @Override
@@ -41,16 +275,21 @@ public interface Instruction {
 
     /**
      * Is capable of assigning to variables and evaluating the value of expressions. Handles
-     * order of operations and parentheses by converting to postfix and doing some preprocessing
-     * during the compilation step, and interprets the postfix instructions via a stack.
+     * order of operations and parentheses by converting to postfix during the compilation step,
+     * which is then built into an {@link Expression} tree.
      */
     class Let implements ExpressionParser, Instruction {
 
         public boolean valid = true;
         protected int type = 0;
         private final String assignVar;
+        private int slot = -1;
         public String err = null;
-        protected final Queue<Object> post = new LinkedList<>();
+        protected Expression expression;
+        // kind the expression is proven to evaluate to, or unset to check it as it runs
+        private byte kind = Frame.UNSET;
+        // whether the expression is only what's concatenated onto the variable's own string, i.e. x = x + "..."
+        private boolean append = false;
 
         public Let(String assignVar, String expr, List<LinkedHashMap<String, Variable.Definition>> vars) {
             String[] assn = assignVar.split(" ");
@@ -80,43 +319,99 @@ public interface Instruction {
                     break;
                 }
             }
+            if (map != null && map.get(this.assignVar).isCollection()) {
+                this.error("can't assign to " + map.get(this.assignVar).typeName + " " + this.assignVar + ", assign to its elements with [let " + this.assignVar + "[index] = value]");
+                return;
+            }
             if (map != null) {
                 this.type = AliasConstants.TYPE_MAP.getOrDefault(map.get(this.assignVar).type.clazz(), 4);
             }
             Integer forcedType = (!newAssignment && assn.length == 2) ? AliasConstants.TYPE_VALUE_MAP.get(assn[0]) : null;
-            Integer type = this.parseExpression(expr, forcedType, vars, this.post);
+            Queue<Object> post = new LinkedList<>();
+            Integer type = this.parseExpression(expr, forcedType, vars, post);
             if (type == null) {
                 this.valid = false;
                 return;
             }
+            this.expression = Expression.fromPostfix(post);
             this.type = type;
             String varType = AliasConstants.INV_VALUE_MAP.getOrDefault(this.type, "string");
             if (newAssignment) {
-                vars.getLast().put(this.assignVar, new Variable.Definition(this.assignVar, varType, new String[0]));
+                this.slot = Variable.Definition.nextSlot(vars);
+                vars.getLast().put(this.assignVar, new Variable.Definition(this.assignVar, varType, new String[0], this.slot));
             }
             else {
-                map.put(this.assignVar, new Variable.Definition(this.assignVar, varType, new String[0]));
+                this.slot = map.get(this.assignVar).slot;
+                map.put(this.assignVar, new Variable.Definition(this.assignVar, varType, new String[0], this.slot));
             }
         }
 
+        private Let(String assignVar, int type, int slot, byte kind, boolean append, Expression expression) {
+            this.assignVar = assignVar;
+            this.type = type;
+            this.slot = slot;
+            this.kind = kind;
+            this.append = append;
+            this.expression = expression;
+        }
+
         @Override
-        public int execute(AliasedCommand aliasedCommand, CommandContext<ServerCommandSource> context, LinkedHashMap<String, Variable> variables) {
-            Operator o = this.evaluate(this.post, variables);
-            if (!variables.containsKey(this.assignVar)) {
-                variables.put(this.assignVar, new Variable(new Variable.Definition(this.assignVar, AliasConstants.INV_VALUE_MAP
-                        .getOrDefault(this.type, "string"), new String[0]), null));
-            }
-            if (o instanceof Operator.NumberOperator n) {
-                variables.put(this.assignVar, new Variable(variables.get(this.assignVar).type(), n.getValue()));
+        public int execute(AliasedCommand aliasedCommand, CommandContext<ServerCommandSource> context, Frame frame) {
+            if (this.append) {
+                frame.appendString(this.slot, this.expression.getString(frame));
+                return -1;
             }
-            else if (o instanceof Operator.StringOperator s) {
-                variables.put(this.assignVar, new Variable(variables.get(this.assignVar).type(), s.str()));
+            switch (this.kind) {
+                case Frame.LONG -> frame.setLong(this.slot, this.expression.getLong(frame));
+                case Frame.DOUBLE -> frame.setDouble(this.slot, this.expression.getDouble(frame));
+                case Frame.OBJECT -> frame.setObject(this.slot, this.expression.getString(frame));
+                default -> Expression.store(this.expression, frame, this.slot);
             }
             return -1;
         }
 
+        public void fold() {
+            this.expression = this.expression.fold();
+        }
+
+        @Override
+        public void recordKinds(SlotKinds kinds) {
+            kinds.write(this.slot, this.append ? Frame.OBJECT : this.expression.staticKind(kinds));
+        }
+
+        /**
+         * Concatenations onto the variable itself become appends. Everything after the variable is still evaluated
+         * into a single string before it is appended, in case it reads the variable too.
+         */
+        @Override
+        public Instruction specialize(SlotKinds kinds) {
+            if (this.append) {
+                return new Let(this.assignVar, this.type, this.slot, this.kind, true, this.expression.specialize(kinds));
+            }
+            byte kind = this.expression.staticKind(kinds);
+            Expression expression = this.expression.specialize(kinds), appended = null;
+            // only variables that always hold strings, so the variable reads the same as before it's appended to
+            Expression left = kinds.get(this.slot) == Frame.OBJECT ? expression : null;
+            while (left instanceof Expression.Concat concat) {
+                Expression.Add add = concat.operation();
+                appended = appended == null ? add.right : new Expression.Concat(new Expression.Add(add.right, appended));
+                if (add.left instanceof Expression.Slot slot && slot.slot() == this.slot) {
+                    return new Let(this.assignVar, this.type, this.slot, kind, true, appended);
+                }
+                left = add.left;
+            }
+            return new Let(this.assignVar, this.type, this.slot, kind == SlotKinds.DYNAMIC ? Frame.UNSET : kind, false,
+                    expression);
+        }
+
+        @Override
+        public String toString() {
+            return "let " + this.assignVar + (this.append ? " += " : " = ") + this.expression;
+        }
+
         @Override
         public void error(String s) {
+            this.valid = false;
             this.err = s;
         }
 
@@ -125,7 +420,7 @@ public interface Instruction {
     /**
      * The basic jump instruction; tells the interpreter to jump to a specific index.
      */
-    class Jump implements Instruction {
+    class Jump implements Instruction, Cloneable {
 
         public int jumpTo;
 
@@ -133,11 +428,34 @@ public interface Instruction {
             this.jumpTo = jumpTo;
         }
 
+        /**
+         * @return a shallow copy with the same jump target, so it can be retargeted without affecting this instruction
+         */
+        public Jump copy() {
+            try {
+                return (Jump) super.clone();
+            }
+            catch (CloneNotSupportedException e) {
+                throw new AssertionError(e);
+            }
+        }
+
         @Override
-        public int execute(AliasedCommand aliasedCommand, CommandContext<ServerCommandSource> context, LinkedHashMap<String, Variable> variables) {
+        public int execute(AliasedCommand aliasedCommand, CommandContext<ServerCommandSource> context, Frame frame) {
             return this.jumpTo;
         }
 
+        public void setJumpTo(int jumpTo) {
+            this.jumpTo = jumpTo;
+        }
+
+        /**
+         * @return whether execution may continue to the next instruction instead of jumping
+         */
+        public boolean isConditional() {
+            return false;
+        }
+
         @Override
         public String toString() {
             return "jmp " + this.jumpTo;
@@ -146,60 +464,290 @@ public interface Instruction {
     }
 
     /**
-     * Tests a condition; if it fails, it jumps to after the if statement ends. Jumping past
-     * [elif/else/end] when successful is handled via {@link IfJump}.
+     * Tests a comparison; if it fails, it jumps to after the if statement ends. Jumping past [elif/else/end] when
+     * successful is handled via {@link IfJump}. Conditions combined with and/or/not are compiled into a chain of
+     * comparisons that jump as soon as the result is known, so the rest of the condition is skipped; this instruction is
+     * the last comparison of its chain, and stands in for the whole chain while compiling.
      */
     class If extends Jump implements ExpressionParser {
 
+        private static final int EQ = 0, GT = 1, LT = 2, GE = 3, LE = 4;
         protected String name = "if";
         protected String cmp;
-        private final Queue<Object> left = new LinkedList<>();
-        private final Queue<Object> right = new LinkedList<>();
+        private int comparator;
+        private Expression left;
+        private Expression right;
+        // jumps when the comparison passes rather than when it fails
+        private boolean negated = false;
+        // kind both sides are proven to be compared as, or unset to check them as it runs
+        private byte kind = Frame.UNSET;
+        // compiler-only: the chain this heads, in order, and the comparisons in it that exit the whole condition
+        private final List<If> chain = new ArrayList<>();
+        private final List<If> exits = new ArrayList<>();
         public String err = null;
         public boolean valid = true;
 
-        public If(String expression, List<LinkedHashMap<String, Variable.Definition>> vars) {
+        private interface Condition {}
+
+        private record Comparison(String cmp, int comparator, Expression left, Expression right) implements Condition {}
+
+        private record Not(Condition condition) implements Condition {}
+
+        /**
+         * @param and whether this is an and, otherwise an or
+         */
+        private record Junction(boolean and, List<Condition> conditions) implements Condition {}
+
+        /**
+         * @param address address the chain will be compiled at
+         */
+        public If(int address, String expression, List<LinkedHashMap<String, Variable.Definition>> vars) {
+            this(address, "if", expression, vars);
+        }
+
+        protected If(int address, String name, String expression, List<LinkedHashMap<String, Variable.Definition>> vars) {
             super(-1);
-            String[] comparators = expression.split(" *[<=>] *");
-            if (comparators.length != 2) {
-                this.err = "must be be of format [" + this.name + " operator1 (>|>=|<|<=|==) operator2]";
+            this.name = name;
+            List<Lexer.Token> tokens = this.tokenize(expression);
+            Lexer.Token unmatched = tokens != null ? Lexer.unmatched(tokens) : null;
+            if (unmatched != null) {
+                this.error("unmatched \"" + unmatched.text() + "\"" + Lexer.at(expression, unmatched.start()));
+                tokens = null;
+            }
+            Condition condition = tokens != null ? this.parseCondition(expression, tokens, 0, tokens.size(), vars) : null;
+            if (condition == null) {
                 this.valid = false;
                 return;
             }
-            String cmp = expression.replace(comparators[0], "").replace(comparators[1], "").strip();
-            if (cmp.length() == 1 && "<=>".contains(cmp) || cmp.length() == 2 && cmp.matches("(<=|>=)")) {
-                this.cmp = cmp;
-                Integer[] type = {0, 0};
-                type[0] = this.parseExpression(comparators[0], null, vars, this.left);
-                if (type[0] == null) {
-                    this.valid = false;
-                    return;
+            this.emit(condition, false, this.exits, address);
+            // the last comparison always exits the condition when it fails, so this takes its place
+            If last = this.chain.removeLast();
+            this.exits.remove(last);
+            this.cmp = last.cmp;
+            this.comparator = last.comparator;
+            this.left = last.left;
+            this.right = last.right;
+            this.negated = last.negated;
+            this.chain.add(this);
+        }
+
+        private If(int jumpTo, String name, String cmp, int comparator, boolean negated, byte kind, Expression left,
+                   Expression right) {
+            super(jumpTo);
+            this.name = name;
+            this.cmp = cmp;
+            this.comparator = comparator;
+            this.negated = negated;
+            this.kind = kind;
+            this.left = left;
+            this.right = right;
+        }
+
+        /**
+         * Parses a range of condition tokens; and binds tighter than or, and parentheses around a whole condition group
+         * it.
+         */
+        private Condition parseCondition(String expression, List<Lexer.Token> tokens, int from, int to, List<
+                LinkedHashMap<String, Variable.Definition>> vars) {
+            for (String junction : new String[]{"or", "and"}) {
+                List<int[]> parts = Lexer.split(tokens, from, to, Lexer.Kind.IDENTIFIER, junction);
+                if (parts.size() > 1) {
+                    List<Condition> conditions = new ArrayList<>();
+                    for (int[] part : parts) {
+                        if (part[0] == part[1]) {
+                            this.error("\"" + junction + "\" must have a condition on each side" + Lexer.at(expression,
+                                    part[0] < tokens.size() ? tokens.get(part[0]).start() : expression.length()));
+                            return null;
+                        }
+                        Condition condition = this.parseCondition(expression, tokens, part[0], part[1], vars);
+                        if (condition == null) {
+                            return null;
+                        }
+                        conditions.add(condition);
+                    }
+                    return new Junction("and".equals(junction), conditions);
                 }
-                type[1] = this.parseExpression(comparators[1], null, vars, this.right);
-                if (type[1] == null) {
-                    this.valid = false;
-                    return;
+            }
+            if (from + 1 < to && tokens.get(from).is(Lexer.Kind.IDENTIFIER, "not")) {
+                Condition condition = this.parseCondition(expression, tokens, from + 1, to, vars);
+                return condition != null ? new Not(condition) : null;
+            }
+            if (from < to && tokens.get(from).kind() == Lexer.Kind.OPEN_PAREN && Lexer.closing(tokens, from, to) == to - 1) {
+                return this.parseCondition(expression, tokens, from + 1, to - 1, vars);
+            }
+            return this.parseComparison(expression, tokens, from, to, vars);
+        }
+
+        private Comparison parseComparison(String expression, List<Lexer.Token> tokens, int from, int to, List<
+                LinkedHashMap<String, Variable.Definition>> vars) {
+            List<int[]> sides = new ArrayList<>();
+            Lexer.Token comparatorToken = null;
+            for (String comparator : new String[]{"<", ">", "=", "<=", ">=", "=="}) {
+                List<int[]> split = Lexer.split(tokens, from, to, Lexer.Kind.COMPARATOR, comparator);
+                if (split.size() > 1) {
+                    if (comparatorToken != null || split.size() > 2) {
+                        this.error("a comparison can only have one comparator" + Lexer.at(expression, tokens.get(split.get(1)[0] - 1).start()));
+                        return null;
+                    }
+                    sides = split;
+                    comparatorToken = tokens.get(split.get(0)[1]);
+                }
+            }
+            if (comparatorToken == null) {
+                this.error("must be be of format [" + this.name + " operator1 (>|>=|<|<=|=) operator2], optionally combined with and/or/not" + (from < to ? Lexer.at(expression, tokens.get(from).start()) : ""));
+                return null;
+            }
+            String cmp = comparatorToken.text().equals("==") ? "=" : comparatorToken.text();
+            int comparator = switch (cmp) {
+                case ">" -> GT;
+                case "<" -> LT;
+                case ">=" -> GE;
+                case "<=" -> LE;
+                default -> EQ;
+            };
+            Integer[] type = {0, 0};
+            Queue<Object> left = new LinkedList<>(), right = new LinkedList<>();
+            type[0] = this.parseTokens(expression, tokens, sides.get(0)[0], sides.get(0)[1], null, vars, left);
+            if (type[0] == null) {
+                return null;
+            }
+            type[1] = this.parseTokens(expression, tokens, sides.get(1)[0], sides.get(1)[1], null, vars, right);
+            if (type[1] == null) {
+                return null;
+            }
+            if (!Objects.equals(type[0], type[1]) && (type[0] == 4 || type[1] == 4) && !"=".equals(cmp)) {
+                this.err = "string type only supports comparison of equality";
+            }
+            return new Comparison(cmp, comparator, Expression.fromPostfix(left), Expression.fromPostfix(right));
+        }
+
+        /**
+         * Compiles a condition into comparisons that jump if it evaluates to jumpWhen and otherwise fall through.
+         * @param target comparisons that jump out are added here, to be pointed at their destination once it's known
+         */
+        private void emit(Condition condition, boolean jumpWhen, List<If> target, int address) {
+            switch (condition) {
+                case Comparison c -> {
+                    If comparison = new If(-1, this.name, c.cmp, c.comparator, jumpWhen, Frame.UNSET, c.left, c.right);
+                    this.chain.add(comparison);
+                    target.add(comparison);
                 }
-                if (!Objects.equals(type[0], type[1]) && (type[0] == 4 || type[1] == 4) && !"=".equals(this.cmp)) {
-                    this.err = "string type only supports comparison of equality";
+                case Not not -> this.emit(not.condition, !jumpWhen, target, address);
+                case Junction junction -> {
+                    // an and is decided as soon as a part fails, an or as soon as one passes
+                    boolean decided = !junction.and;
+                    List<Condition> conditions = junction.conditions;
+                    if (jumpWhen == decided) {
+                        for (Condition part : conditions) {
+                            this.emit(part, decided, target, address);
+                        }
+                    }
+                    else {
+                        List<If> skip = new ArrayList<>();
+                        for (Condition part : conditions.subList(0, conditions.size() - 1)) {
+                            this.emit(part, decided, skip, address);
+                        }
+                        this.emit(conditions.getLast(), jumpWhen, target, address);
+                        for (If comparison : skip) {
+                            comparison.jumpTo = address + this.chain.size();
+                        }
+                    }
                 }
+                default -> throw new IllegalStateException();
             }
-            else {
-                this.err = "invalid comparator \"" + cmp + "\"";
-                this.valid = false;
+        }
+
+        /**
+         * @return the compiled condition, ending with this instruction
+         */
+        public List<If> getChain() {
+            return this.chain;
+        }
+
+        /**
+         * Also points every comparison in the chain that exits the condition at the new target.
+         */
+        @Override
+        public void setJumpTo(int jumpTo) {
+            this.jumpTo = jumpTo;
+            for (If exit : this.exits) {
+                exit.jumpTo = jumpTo;
             }
         }
 
         @Override
-        public int execute(AliasedCommand aliasedCommand, CommandContext<ServerCommandSource> context, LinkedHashMap<String, Variable> variables) {
-            Operator l = this.evaluate(this.left, variables);
-            Operator r = this.evaluate(this.right, variables);
-            return l.compare(this.cmp, r) ? -1 : this.jumpTo;
+        public int execute(AliasedCommand aliasedCommand, CommandContext<ServerCommandSource> context, Frame frame) {
+            return this.test(frame) != this.negated ? -1 : this.jumpTo;
+        }
+
+        @Override
+        public boolean isConditional() {
+            return true;
+        }
+
+        public void fold() {
+            this.left = this.left.fold();
+            this.right = this.right.fold();
+        }
+
+        @Override
+        public Instruction specialize(SlotKinds kinds) {
+            If condition = (If) this.copy();
+            byte kind = SlotKinds.arithmetic(this.left.staticKind(kinds), this.right.staticKind(kinds));
+            condition.kind = kind == SlotKinds.DYNAMIC ? Frame.UNSET : kind;
+            condition.left = this.left.specialize(kinds);
+            condition.right = this.right.specialize(kinds);
+            return condition;
+        }
+
+        /**
+         * @return whether execution always falls through if both sides are constant, otherwise null
+         */
+        public Boolean constantResult() {
+            return this.left.isConstant() && this.right.isConstant() ? this.test(null) != this.negated : null;
+        }
+
+        /**
+         * Numbers are compared as longs if both sides are longs and as doubles otherwise; if either side is a string,
+         * any comparator tests for string equality. Which applies is only checked as it runs if it wasn't proven.
+         */
+        private boolean test(Frame frame) {
+            byte kind = this.kind != Frame.UNSET ? this.kind : this.kind(frame);
+            if (kind == Frame.OBJECT) {
+                return this.left.getString(frame).equals(this.right.getString(frame));
+            }
+            if (kind == Frame.LONG) {
+                long a = this.left.getLong(frame), b = this.right.getLong(frame);
+                return switch (this.comparator) {
+                    case GT -> a > b;
+                    case LT -> a < b;
+                    case GE -> a >= b;
+                    case LE -> a <= b;
+                    default -> a == b;
+                };
+            }
+            double a = this.left.getDouble(frame), b = this.right.getDouble(frame);
+            return switch (this.comparator) {
+                case GT -> a > b;
+                case LT -> a < b;
+                case GE -> a >= b;
+                case LE -> a <= b;
+                default -> a == b;
+            };
+        }
+
+        private byte kind(Frame frame) {
+            byte l = this.left.kind(frame), r = this.right.kind(frame);
+            if (l == Frame.OBJECT || r == Frame.OBJECT) {
+                return Frame.OBJECT;
+            }
+            return l == Frame.LONG && r == Frame.LONG ? Frame.LONG : Frame.DOUBLE;
         }
 
         @Override
         public String toString() {
-            return "if [" + this.left + this.cmp + this.right + "] else jmp " + this.jumpTo;
+            return this.name + " [" + this.left + " " + this.cmp + " " + this.right + "]" + (this.negated ? " then jmp " :
+                    " else jmp ") + this.jumpTo;
         }
 
         @Override
@@ -231,9 +779,195 @@ public interface Instruction {
         public int startAddress;
 
         public While(int startAddress, String expression, List<LinkedHashMap<String, Variable.Definition>> vars) {
-            super(expression, vars);
+            super(startAddress, "while", expression, vars);
+            this.startAddress = startAddress;
+        }
+
+    }
+
+    /**
+     * Start of a counted loop, [for i = a to b step s]. Sets the counter and evaluates the inclusive bound and the step
+     * once, into slots of their own, then skips the loop if the counter already starts past the bound. Counting is done
+     * entirely in {@link Next}, so each iteration costs a single instruction on top of the loop body.
+     */
+    class For extends Jump implements ExpressionParser {
+
+        public boolean valid = true;
+        public String err = null;
+        public int startAddress;
+        private final String name;
+        private int slot = -1;
+        private int boundSlot = -1;
+        private int stepSlot = -1;
+        private Expression from;
+        private Expression to;
+        private Expression step = new Expression.LongConstant(1);
+
+        /**
+         * @param step step expression, or null to count up by 1
+         */
+        public For(int startAddress, String name, String from, String to, String step, List<LinkedHashMap<String,
+                Variable.Definition>> vars) {
+            super(-1);
             this.startAddress = startAddress;
-            this.name = "while";
+            this.name = name;
+            // the counter isn't declared yet, so the bounds can only refer to it if it already exists
+            if ((this.from = this.parseBound(from, vars)) == null || (this.to = this.parseBound(to, vars)) == null ||
+                    step != null && (this.step = this.parseBound(step, vars)) == null) {
+                return;
+            }
+            // folded here already so steps like 1 - 1 are rejected too, rather than failing every time the loop runs
+            Expression folded = this.step.fold();
+            if (folded.isConstant() && folded.getLong(null) == 0) {
+                this.error("for loop step can't be 0");
+                return;
+            }
+            Variable.Definition def = Variable.Definition.find(name, vars);
+            if (def != null && def.isCollection()) {
+                this.error("can't use " + def.typeName + " " + name + " as a loop counter");
+                return;
+            }
+            if (def != null) {
+                this.slot = def.slot;
+                for (LinkedHashMap<String, Variable.Definition> varMap : vars) {
+                    if (varMap.containsKey(name)) {
+                        varMap.put(name, new Variable.Definition(name, "long", new String[0], this.slot));
+                        break;
+                    }
+                }
+            }
+            else {
+                this.slot = Variable.Definition.nextSlot(vars);
+                vars.getLast().put(name, new Variable.Definition(name, "long", new String[0], this.slot));
+            }
+            // not valid variable names, so they can't be referenced from the loop body
+            this.boundSlot = Variable.Definition.nextSlot(vars);
+            vars.getLast().put("[for] to", new Variable.Definition("[for] to", "long", new String[0], this.boundSlot));
+            this.stepSlot = Variable.Definition.nextSlot(vars);
+            vars.getLast().put("[for] step", new Variable.Definition("[for] step", "long", new String[0], this.stepSlot));
+        }
+
+        private For(int jumpTo, String name, int slot, int boundSlot, int stepSlot, Expression from, Expression to,
+                    Expression step) {
+            super(jumpTo);
+            this.name = name;
+            this.slot = slot;
+            this.boundSlot = boundSlot;
+            this.stepSlot = stepSlot;
+            this.from = from;
+            this.to = to;
+            this.step = step;
+        }
+
+        private Expression parseBound(String expr, List<LinkedHashMap<String, Variable.Definition>> vars) {
+            Queue<Object> post = new LinkedList<>();
+            Integer type = this.parseExpression(expr, null, vars, post);
+            if (type == null) {
+                return null;
+            }
+            if (type > 1) {
+                this.error("for loop bounds and step must be integers");
+                return null;
+            }
+            return Expression.fromPostfix(post);
+        }
+
+        @Override
+        public int execute(AliasedCommand aliasedCommand, CommandContext<ServerCommandSource> context, Frame frame) {
+            long i = this.from.getLong(frame), to = this.to.getLong(frame), step = this.step.getLong(frame);
+            if (step == 0) {
+                context.getSource().sendError(TextUtils.formattable("For loop step can't be 0"));
+                return -5;
+            }
+            frame.setLong(this.slot, i);
+            frame.setLong(this.boundSlot, to);
+            frame.setLong(this.stepSlot, step);
+            return (step > 0 ? i <= to : i >= to) ? -1 : this.jumpTo;
+        }
+
+        @Override
+        public boolean isConditional() {
+            return true;
+        }
+
+        public void fold() {
+            this.from = this.from.fold();
+            this.to = this.to.fold();
+            this.step = this.step.fold();
+        }
+
+        @Override
+        public void recordKinds(SlotKinds kinds) {
+            kinds.write(this.slot, Frame.LONG);
+            kinds.write(this.boundSlot, Frame.LONG);
+            kinds.write(this.stepSlot, Frame.LONG);
+        }
+
+        @Override
+        public Instruction specialize(SlotKinds kinds) {
+            For loop = (For) this.copy();
+            loop.from = this.from.specialize(kinds);
+            loop.to = this.to.specialize(kinds);
+            loop.step = this.step.specialize(kinds);
+            return loop;
+        }
+
+        @Override
+        public String toString() {
+            return "for " + this.name + " = " + this.from + " to " + this.to + " step " + this.step + " else jmp " +
+                    this.jumpTo;
+        }
+
+        @Override
+        public void error(String s) {
+            this.valid = false;
+            this.err = s;
+        }
+
+    }
+
+    /**
+     * End of a counted loop. Steps the counter and jumps back to the start of the loop body unless it has passed the
+     * bound, or would overflow.
+     */
+    class Next extends Jump {
+
+        private final String name;
+        private final int slot;
+        private final int boundSlot;
+        private final int stepSlot;
+
+        public Next(For loop) {
+            this(loop.startAddress + 1, loop.name, loop.slot, loop.boundSlot, loop.stepSlot);
+        }
+
+        private Next(int jumpTo, String name, int slot, int boundSlot, int stepSlot) {
+            super(jumpTo);
+            this.name = name;
+            this.slot = slot;
+            this.boundSlot = boundSlot;
+            this.stepSlot = stepSlot;
+        }
+
+        @Override
+        public int execute(AliasedCommand aliasedCommand, CommandContext<ServerCommandSource> context, Frame frame) {
+            long step = frame.getLong(this.stepSlot), i = frame.getLong(this.slot), next = i + step;
+            if (((i ^ next) & (step ^ next)) < 0) {
+                return -1;
+            }
+            frame.setLong(this.slot, next);
+            return (step > 0 ? next <= frame.getLong(this.boundSlot) : next >= frame.getLong(this.boundSlot)) ?
+                    this.jumpTo : -1;
+        }
+
+        @Override
+        public boolean isConditional() {
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return "next " + this.name + ", loop to " + this.jumpTo;
         }
 
     }
@@ -246,24 +980,362 @@ public interface Instruction {
         public boolean valid = true;
         public String err = null;
         int inferredType = -1;
-        private final Queue<Object> post = new LinkedList<>();
+        private Expression expression = null;
 
         public Return(String expr, List<LinkedHashMap<String, Variable.Definition>> vars) {
             if (!expr.isEmpty()) {
-                this.inferredType = this.parseExpression(expr, null, vars, this.post);
+                Queue<Object> post = new LinkedList<>();
+                Integer type = this.parseExpression(expr, null, vars, post);
+                if (type != null) {
+                    this.inferredType = type;
+                    this.expression = Expression.fromPostfix(post);
+                }
+            }
+        }
+
+        private Return(int inferredType, Expression expression) {
+            this.inferredType = inferredType;
+            this.expression = expression;
+        }
+
+        /**
+         * The value is kept in the frame; the interpreter passes it on to whoever ran the alias.
+         */
+        @Override
+        public int execute(AliasedCommand aliasedCommand, CommandContext<ServerCommandSource> context, Frame frame) {
+            frame.setReturnValue(this.expression != null ? Expression.toOperator(this.expression, frame) : null);
+            return -2;
+        }
+
+        public void fold() {
+            if (this.expression != null) {
+                this.expression = this.expression.fold();
+            }
+        }
+
+        @Override
+        public Instruction specialize(SlotKinds kinds) {
+            return this.expression != null ? new Return(this.inferredType, this.expression.specialize(kinds)) : this;
+        }
+
+        /**
+         * @return the returned expression, or null for a bare [return]
+         */
+        public Expression getExpression() {
+            return this.expression;
+        }
+
+        @Override
+        public String toString() {
+            return this.expression != null ? "return " + this.expression : "return";
+        }
+
+        @Override
+        public void error(String s) {
+            this.valid = false;
+            this.err = s;
+        }
+    }
+
+    /**
+     * Suspends the alias for a number of ticks, or until the next tick for [yield]. Returns -3 so the interpreter can
+     * save its state; the duration is then read through {@link Sleep#getTicks(Frame)}. Suspending fails the line in an
+     * alias run as a command from another alias, since the line running it can't wait for it; [call] it instead.
+     */
+    class Sleep implements Instruction, ExpressionParser {
+
+        public boolean valid = true;
+        public String err = null;
+        private Expression ticks = new Expression.LongConstant(1);
+
+        public Sleep(String expr, List<LinkedHashMap<String, Variable.Definition>> vars) {
+            if (!expr.isEmpty()) {
+                Queue<Object> post = new LinkedList<>();
+                Integer type = this.parseExpression(expr, null, vars, post);
+                if (type == null) {
+                    this.valid = false;
+                    return;
+                }
+                if (type == 4) {
+                    this.error("sleep duration must be a number of ticks");
+                    return;
+                }
+                this.ticks = Expression.fromPostfix(post);
+            }
+        }
+
+        private Sleep(Expression ticks) {
+            this.ticks = ticks;
+        }
+
+        @Override
+        public int execute(AliasedCommand aliasedCommand, CommandContext<ServerCommandSource> context, Frame frame) {
+            return -3;
+        }
+
+        /**
+         * @return ticks to wait, at least 1
+         */
+        public long getTicks(Frame frame) {
+            return Math.max(1, this.ticks.getLong(frame));
+        }
+
+        public void fold() {
+            this.ticks = this.ticks.fold();
+        }
+
+        @Override
+        public Instruction specialize(SlotKinds kinds) {
+            return new Sleep(this.ticks.specialize(kinds));
+        }
+
+        @Override
+        public String toString() {
+            return "sleep " + this.ticks;
+        }
+
+        @Override
+        public void error(String s) {
+            this.valid = false;
+            this.err = s;
+        }
+
+    }
+
+    /**
+     * Runs another alias directly, without the dispatcher. The target is looked up by name on first execution and
+     * again whenever the command tree changes, so aliases can call aliases that are compiled after them. Arguments
+     * are evaluated in the caller's frame and stored straight into the callee's, and the return value, if assigned,
+     * comes back through the callee's frame. The interpreter runs the callee on its own call stack, so neither deep nor
+     * tail recursion grows the JVM stack.
+     */
+    class Call implements Instruction, ExpressionParser {
+
+        // ways a frame's return value is converted when it finishes, otherwise a type to cast it to
+        public static final int RETURN_INVALID = -4;
+        public static final int RETURN_AS_IS = -3;
+        public static final int RETURN_NOTHING = -2;
+        public static final int RETURN_NULL = -1;
+        public boolean valid = true;
+        public String err = null;
+        private final String target;
+        private final Expression[] arguments;
+        private final Fetch assign;
+        private AliasedCommand resolved = null;
+        private int resolvedVersion = -1;
+        private int tailReturnMode = RETURN_INVALID;
+
+        /**
+         * @param target name of the alias to call
+         * @param arguments comma separated argument expressions
+         * @param assign "type var" to assign the return value to, or null to discard it
+         */
+        public Call(String target, String arguments, String assign, List<LinkedHashMap<String, Variable.Definition>> vars) {
+            this.target = target;
+            List<Lexer.Token> tokens = this.tokenize(arguments);
+            if (tokens == null) {
+                this.arguments = new Expression[0];
+                this.assign = null;
+                return;
+            }
+            List<int[]> split = tokens.isEmpty() ? List.of() : Lexer.split(tokens, 0, tokens.size(), Lexer.Kind.COMMA, ",");
+            this.arguments = new Expression[split.size()];
+            for (int i = 0; i < this.arguments.length; i++) {
+                Queue<Object> post = new LinkedList<>();
+                if (this.parseTokens(arguments, tokens, split.get(i)[0], split.get(i)[1], null, vars, post) == null) {
+                    this.valid = false;
+                    this.assign = null;
+                    return;
+                }
+                this.arguments[i] = Expression.fromPostfix(post);
+            }
+            if (assign != null) {
+                String[] typeAndVar = assign.strip().split(" +");
+                if (typeAndVar.length != 2) {
+                    this.error("assignment should be of form [call type var = alias(args)]");
+                    this.assign = null;
+                    return;
+                }
+                this.assign = new Fetch(typeAndVar[0], typeAndVar[1], vars);
+                if (!this.assign.valid) {
+                    this.error(this.assign.err);
+                }
+            }
+            else {
+                this.assign = null;
             }
         }
 
+        private Call(String target, Expression[] arguments, Fetch assign, int tailReturnMode) {
+            this.target = target;
+            this.arguments = arguments;
+            this.assign = assign;
+            this.tailReturnMode = tailReturnMode;
+        }
+
+        /**
+         * Asks the interpreter to enter the call, which it does itself with {@link Call#enter(CommandContext, Frame)}.
+         */
         @Override
-        public int execute(AliasedCommand aliasedCommand, CommandContext<ServerCommandSource> context, LinkedHashMap<String, Variable> variables) {
-            if (this.inferredType >= 0) {
-                Operator o = this.evaluate(this.post, variables);
-                ((CommandSourceModifier) context.getSource()).technicalToolbox$setReturnValue(o);
+        public int execute(AliasedCommand aliasedCommand, CommandContext<ServerCommandSource> context, Frame frame) {
+            return -4;
+        }
+
+        /**
+         * Resolves the target and sets up its frame with the evaluated arguments.
+         * @param frame frame of the calling alias
+         * @return frame to run {@link Call#getTarget()} in, or null if the call failed; sends errors to the source
+         */
+        public Frame enter(CommandContext<ServerCommandSource> context, Frame frame) {
+            if (this.resolvedVersion != ServerUtil.getCommandTreeVersion()) {
+                this.resolved = AliasManager.ALIASES.get(this.target);
+                this.resolvedVersion = ServerUtil.getCommandTreeVersion();
+            }
+            AliasedCommand target = this.resolved;
+            if (target == null || !target.isRegistered()) {
+                context.getSource().sendError(TextUtils.formattable("Couldn't find alias \"" + this.target + "\""));
+                return null;
+            }
+            Collection<Variable.Definition> definitions = target.getArgumentDefinitions();
+            if (definitions.size() != this.arguments.length) {
+                context.getSource().sendError(TextUtils.formattable("Alias \"" + this.target + "\" takes " + definitions
+                        .size() + " arguments, got " + this.arguments.length));
+                return null;
+            }
+            Frame callee = target.createFrame(context.getSource());
+            if (callee == null) {
+                return null;
+            }
+            int slot = 0;
+            for (Variable.Definition definition : definitions) {
+                Call.storeArgument(this.arguments[slot], frame, callee, slot++, definition.type.clazz());
+            }
+            return callee;
+        }
+
+        /**
+         * Assigns the callee's return value once it finishes.
+         * @param frame frame of the calling alias
+         * @param value return value, or null if the callee didn't return one
+         */
+        public void leave(Frame frame, Operator value) {
+            if (this.assign != null) {
+                this.assign.assign(frame, value);
+            }
+        }
+
+        /**
+         * @return alias resolved by the last {@link Call#enter(CommandContext, Frame)}
+         */
+        public AliasedCommand getTarget() {
+            return this.resolved;
+        }
+
+        public String getTargetName() {
+            return this.target;
+        }
+
+        public Fetch getAssign() {
+            return this.assign;
+        }
+
+        public boolean isTailCall() {
+            return this.tailReturnMode != RETURN_INVALID;
+        }
+
+        public int getTailReturnMode() {
+            return this.tailReturnMode;
+        }
+
+        /**
+         * Marks this as a tail call, set by the {@link Optimizer} for calls that are followed only by returning.
+         * @param returnMode how the callee's return value becomes the caller's; one of {@link Call#RETURN_NOTHING},
+         *                   {@link Call#RETURN_NULL} or a type to cast to
+         */
+        void setTailReturnMode(int returnMode) {
+            this.tailReturnMode = returnMode;
+        }
+
+        /**
+         * Combines the return mode of a frame with that of a tail call made from it, which is how the result of the new
+         * frame has to be converted to give what the original would have returned.
+         * @return the combined mode, or {@link Call#RETURN_INVALID} if no single mode does
+         */
+        public static int composeReturnModes(int outer, int inner) {
+            if (outer == RETURN_AS_IS) {
+                return inner;
+            }
+            if (outer == inner || outer == RETURN_NOTHING || outer == RETURN_NULL) {
+                return outer;
+            }
+            return RETURN_INVALID;
+        }
+
+        /**
+         * Casts a return value the same way assigning it to a variable of a type and returning that variable would.
+         */
+        public static Operator castReturnValue(Operator value, int type) {
+            Frame frame = new Frame(1);
+            frame.set(0, (value != null ? value : new Operator.NumberOperator(0)).toType(type));
+            return Expression.toOperator(new Expression.Slot("", 0), frame);
+        }
+
+        /**
+         * Converts an argument to the callee's declared argument type, the same type the dispatcher would have parsed it
+         * as. Range limits of the argument type are not checked.
+         */
+        private static void storeArgument(Expression argument, Frame caller, Frame callee, int slot, Class<?> clazz) {
+            if (clazz == Integer.class) {
+                callee.setLong(slot, (int) argument.getLong(caller));
+            }
+            else if (clazz == Long.class) {
+                callee.setLong(slot, argument.getLong(caller));
+            }
+            else if (clazz == Float.class) {
+                callee.setFloat(slot, (float) argument.getDouble(caller));
+            }
+            else if (clazz == Double.class) {
+                callee.setDouble(slot, argument.getDouble(caller));
+            }
+            else if (clazz == Boolean.class) {
+                callee.setObject(slot, argument.kind(caller) == Frame.OBJECT ? Boolean.parseBoolean(argument.getString(caller)) :
+                        argument.getDouble(caller) != 0);
             }
             else {
-                ((CommandSourceModifier) context.getSource()).technicalToolbox$setReturnValue(null);
+                callee.setObject(slot, argument.getString(caller));
             }
-            return -2;
+        }
+
+        public void fold() {
+            for (int i = 0; i < this.arguments.length; i++) {
+                this.arguments[i] = this.arguments[i].fold();
+            }
+        }
+
+        @Override
+        public void recordKinds(SlotKinds kinds) {
+            if (this.assign != null) {
+                this.assign.recordKinds(kinds);
+            }
+        }
+
+        @Override
+        public Instruction specialize(SlotKinds kinds) {
+            Expression[] arguments = new Expression[this.arguments.length];
+            for (int i = 0; i < arguments.length; i++) {
+                arguments[i] = this.arguments[i].specialize(kinds);
+            }
+            return new Call(this.target, arguments, this.assign, this.tailReturnMode);
+        }
+
+        @Override
+        public String toString() {
+            StringJoiner joiner = new StringJoiner(", ", "call " + this.target + "(", ")");
+            for (Expression argument : this.arguments) {
+                joiner.add(argument.toString());
+            }
+            String out = this.assign != null ? joiner + " -> " + this.assign : joiner.toString();
+            return this.isTailCall() ? out + " (tail)" : out;
         }
 
         @Override
@@ -271,6 +1343,7 @@ public interface Instruction {
             this.valid = false;
             this.err = s;
         }
+
     }
 
     /**
@@ -284,10 +1357,12 @@ public interface Instruction {
         public String err = null;
         private int type = 0;
         private String assignVar = null;
+        private int slot = -1;
 
         public Fetch(String type, String var, List<LinkedHashMap<String, Variable.Definition>> vars) {
             if (!AliasConstants.TYPE_VALUE_MAP.containsKey(type)) {
                 this.error("not a valid type: " + type);
+                return;
             }
             this.assignVar = var;
             if (!this.assignVar.matches("[a-zA-Z_][a-zA-Z0-9_]*")) {
@@ -296,32 +1371,229 @@ public interface Instruction {
                 return;
             }
             this.type = AliasConstants.TYPE_VALUE_MAP.get(type);
-            boolean newAssignment = true;
-            Variable.Definition definition = new Variable.Definition(this.assignVar, AliasConstants.INV_VALUE_MAP.get(this.type),
-                    new String[0]);
+            String varType = AliasConstants.INV_VALUE_MAP.get(this.type);
             for (LinkedHashMap<String, Variable.Definition> varMap : vars) {
                 if (varMap.containsKey(this.assignVar)) {
-                    newAssignment = false;
-                    varMap.put(this.assignVar, definition);
-                    break;
+                    if (varMap.get(this.assignVar).isCollection()) {
+                        this.error("can't assign to " + varMap.get(this.assignVar).typeName + " " + this.assignVar);
+                        return;
+                    }
+                    this.slot = varMap.get(this.assignVar).slot;
+                    varMap.put(this.assignVar, new Variable.Definition(this.assignVar, varType, new String[0], this.slot));
+                    return;
                 }
             }
-            if (newAssignment) {
-                vars.getLast().put(this.assignVar, definition);
-            }
+            this.slot = Variable.Definition.nextSlot(vars);
+            vars.getLast().put(this.assignVar, new Variable.Definition(this.assignVar, varType, new String[0], this.slot));
+        }
+
+        private Fetch(String assignVar, int type, int slot) {
+            this.assignVar = assignVar;
+            this.type = type;
+            this.slot = slot;
         }
 
         @Override
-        public int execute(AliasedCommand aliasedCommand, CommandContext<ServerCommandSource> context, LinkedHashMap<String, Variable> variables) {
-            Operator o = ((CommandSourceModifier) context.getSource()).technicalToolbox$getReturnValue();
+        public int execute(AliasedCommand aliasedCommand, CommandContext<ServerCommandSource> context, Frame frame) {
+            this.assign(frame, ((CommandSourceModifier) context.getSource()).technicalToolbox$getReturnValue());
+            return -1;
+        }
+
+        /**
+         * Stores a return value into the fetched variable, cast to its type.
+         */
+        public void assign(Frame frame, Operator o) {
             if (o == null) {
                 o = new Operator.NumberOperator(0);
             }
-            Variable.Definition def = new Variable.Definition(this.assignVar, AliasConstants.INV_VALUE_MAP.get(this.type), new String[0]);
-            variables.put(this.assignVar, new Variable(def, o.toType(this.type)));
+            frame.set(this.slot, o.toType(this.type));
+        }
+
+        public int getSlot() {
+            return this.slot;
+        }
+
+        public int getType() {
+            return this.type;
+        }
+
+        @Override
+        public void recordKinds(SlotKinds kinds) {
+            kinds.write(this.slot, SlotKinds.ofType(this.type));
+        }
+
+        @Override
+        public String toString() {
+            return "fetch " + AliasConstants.INV_VALUE_MAP.get(this.type) + " " + this.assignVar;
+        }
+
+        @Override
+        public void error(String s) {
+            this.valid = false;
+            this.err = s;
+        }
+
+    }
+
+    /**
+     * Declares a local list or map, or empties it if it's declared again, i.e. [list int xs] or [map string names].
+     * Elements share a single type, as in {@link AliasConstants#TYPE_VALUE_MAP}.
+     */
+    class Declare implements Instruction {
+
+        public boolean valid = true;
+        public String err = null;
+        private final String name;
+        private final boolean map;
+        private int type = 4;
+        private int slot = -1;
+
+        public Declare(String kind, String type, String name, List<LinkedHashMap<String, Variable.Definition>> vars) {
+            this.name = name;
+            this.map = "map".equals(kind);
+            if (!AliasConstants.TYPE_VALUE_MAP.containsKey(type)) {
+                this.error("not a valid type: " + type);
+                return;
+            }
+            if (!this.name.matches("[a-zA-Z_][a-zA-Z0-9_]*")) {
+                this.error("invalid variable name " + this.name);
+                return;
+            }
+            this.type = AliasConstants.TYPE_VALUE_MAP.get(type);
+            Variable.Definition def = Variable.Definition.find(this.name, vars);
+            if (def != null && !def.isCollection()) {
+                this.error("variable " + this.name + " is already declared as a single value");
+                return;
+            }
+            for (LinkedHashMap<String, Variable.Definition> varMap : vars) {
+                if (varMap.containsKey(this.name)) {
+                    this.slot = def.slot;
+                    varMap.put(this.name, new Variable.Definition(this.name, kind, new String[]{type}, this.slot));
+                    return;
+                }
+            }
+            this.slot = Variable.Definition.nextSlot(vars);
+            vars.getLast().put(this.name, new Variable.Definition(this.name, kind, new String[]{type}, this.slot));
+        }
+
+        private Declare(String name, boolean map, int type, int slot) {
+            this.name = name;
+            this.map = map;
+            this.type = type;
+            this.slot = slot;
+        }
+
+        @Override
+        public int execute(AliasedCommand aliasedCommand, CommandContext<ServerCommandSource> context, Frame frame) {
+            frame.setObject(this.slot, this.map ? new AliasMap(this.type) : new AliasList(this.type));
+            return -1;
+        }
+
+        @Override
+        public void recordKinds(SlotKinds kinds) {
+            kinds.declare(this.slot, this.type);
+        }
+
+        @Override
+        public String toString() {
+            return (this.map ? "map " : "list ") + AliasConstants.INV_VALUE_MAP.get(this.type) + " " + this.name;
+        }
+
+        private void error(String s) {
+            this.valid = false;
+            this.err = s;
+        }
+
+    }
+
+    /**
+     * Writes an element of a list or map, i.e. [let xs[i] = value], or appends to a list, i.e. [append xs value].
+     * Writing past the end of a list, or to a list or map whose declaration hasn't run, is an error, which stops the
+     * alias.
+     */
+    class Store implements Instruction, ExpressionParser {
+
+        public boolean valid = true;
+        public String err = null;
+        private final String name;
+        private int slot = -1;
+        private Expression index = null;
+        private Expression value;
+
+        /**
+         * @param index index or key, or null to append
+         */
+        public Store(String name, String index, String value, List<LinkedHashMap<String, Variable.Definition>> vars) {
+            this.name = name;
+            Variable.Definition def = Variable.Definition.find(name, vars);
+            if (def == null || !def.isCollection()) {
+                this.error("\"" + name + "\" is not a list or map");
+                return;
+            }
+            if (index == null && !"list".equals(def.typeName)) {
+                this.error("can only append to lists, set map entries with [let " + name + "[key] = value]");
+                return;
+            }
+            this.slot = def.slot;
+            if (index != null && (this.index = this.parseIndex(def, index, vars)) == null) {
+                return;
+            }
+            Queue<Object> post = new LinkedList<>();
+            Integer type = this.parseExpression(value, def.elementType() < 4 ? def.elementType() : null, vars, post);
+            if (type == null) {
+                return;
+            }
+            this.value = Expression.fromPostfix(post);
+        }
+
+        private Store(String name, int slot, Expression index, Expression value) {
+            this.name = name;
+            this.slot = slot;
+            this.index = index;
+            this.value = value;
+        }
+
+        @Override
+        public int execute(AliasedCommand aliasedCommand, CommandContext<ServerCommandSource> context, Frame frame) {
+            switch (frame.getObject(this.slot)) {
+                case AliasList list when this.index == null -> list.append(this.value, frame);
+                case AliasList list -> {
+                    long i = this.index.getLong(frame);
+                    if (!list.inBounds(i)) {
+                        context.getSource().sendError(TextUtils.formattable("Index " + i + " out of bounds for list \"" +
+                                this.name + "\" of length " + list.size()));
+                        return -5;
+                    }
+                    list.set(i, this.value, frame);
+                }
+                case AliasMap map -> map.put(this.index.getString(frame), this.value, frame);
+                case null, default -> {
+                    context.getSource().sendError(TextUtils.formattable("\"" + this.name + "\" is not initialised"));
+                    return -5;
+                }
+            }
             return -1;
         }
 
+        public void fold() {
+            if (this.index != null) {
+                this.index = this.index.fold();
+            }
+            this.value = this.value.fold();
+        }
+
+        @Override
+        public Instruction specialize(SlotKinds kinds) {
+            return new Store(this.name, this.slot, this.index != null ? this.index.specialize(kinds) : null, this.value
+                    .specialize(kinds));
+        }
+
+        @Override
+        public String toString() {
+            return this.index == null ? "append " + this.name + " " + this.value : "let " + this.name + "[" + this.index +
+                    "] = " + this.value;
+        }
+
         @Override
         public void error(String s) {
             this.valid = false;
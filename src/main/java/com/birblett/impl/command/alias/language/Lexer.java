@@ -0,0 +1,218 @@
+package com.birblett.impl.command.alias.language;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Single-pass tokenizer for expressions and conditions. Numbers are converted while they are scanned, so nothing is
+ * scanned twice and well-formed input never throws; anything that can't start a token ends the token list with an
+ * {@link Kind#INVALID} token at its position.
+ */
+public class Lexer {
+
+    public enum Kind {
+        NUMBER, STRING, IDENTIFIER, OPERATOR, COMPARATOR, OPEN_PAREN, CLOSE_PAREN, OPEN_BRACKET, CLOSE_BRACKET, COMMA,
+        INVALID
+    }
+
+    /**
+     * @param text source text of the token; for strings this includes the quotes, for invalid tokens it is the error
+     * @param start index of the first character in the source
+     * @param end index after the last character in the source
+     * @param number value of a number token, otherwise null
+     */
+    public record Token(Kind kind, String text, int start, int end, Operator.NumberOperator number) {
+
+        public boolean is(Kind kind, String text) {
+            return this.kind == kind && this.text.equals(text);
+        }
+
+        /**
+         * @return whether this is a number with a float suffix, i.e. 1.5f
+         */
+        public boolean isFloat() {
+            return this.kind == Kind.NUMBER && (this.text.endsWith("f") || this.text.endsWith("F"));
+        }
+
+    }
+
+    public static List<Token> tokenize(String source) {
+        List<Token> tokens = new ArrayList<>();
+        int i = 0, length = source.length();
+        while (i < length) {
+            char c = source.charAt(i);
+            int start = i;
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            if (c >= '0' && c <= '9') {
+                long value = 0;
+                boolean overflow = false;
+                while (i < length && source.charAt(i) >= '0' && source.charAt(i) <= '9') {
+                    int digit = source.charAt(i++) - '0';
+                    overflow |= value > (Long.MAX_VALUE - digit) / 10;
+                    value = value * 10 + digit;
+                }
+                boolean decimal = false;
+                if (i + 1 < length && source.charAt(i) == '.' && source.charAt(i + 1) >= '0' && source.charAt(i + 1) <= '9') {
+                    decimal = true;
+                    i++;
+                    while (i < length && source.charAt(i) >= '0' && source.charAt(i) <= '9') {
+                        i++;
+                    }
+                }
+                int digits = i;
+                if (i < length && (source.charAt(i) == 'f' || source.charAt(i) == 'F')) {
+                    i++;
+                }
+                if (i < length && Lexer.isIdentifierPart(source.charAt(i))) {
+                    tokens.add(new Token(Kind.INVALID, "unexpected character '" + source.charAt(i) + "' in number", i,
+                            i + 1, null));
+                    return tokens;
+                }
+                // only well-formed digits reach parseDouble, so it can't throw
+                tokens.add(new Token(Kind.NUMBER, source.substring(start, i), start, i, decimal || overflow ? new
+                        Operator.NumberOperator(Double.parseDouble(source.substring(start, digits))) : new
+                        Operator.NumberOperator(value)));
+                continue;
+            }
+            if (Lexer.isIdentifierStart(c)) {
+                while (i < length && Lexer.isIdentifierPart(source.charAt(i))) {
+                    i++;
+                }
+                tokens.add(new Token(Kind.IDENTIFIER, source.substring(start, i), start, i, null));
+                continue;
+            }
+            if (c == '"') {
+                i++;
+                while (i < length && !(source.charAt(i) == '"' && source.charAt(i - 1) != '\\')) {
+                    i++;
+                }
+                if (i >= length) {
+                    tokens.add(new Token(Kind.INVALID, "unterminated string", start, length, null));
+                    return tokens;
+                }
+                i++;
+                tokens.add(new Token(Kind.STRING, source.substring(start, i), start, i, null));
+                continue;
+            }
+            Kind kind = switch (c) {
+                case '+', '-', '*', '/', '%', '^' -> Kind.OPERATOR;
+                case '<', '>', '=' -> Kind.COMPARATOR;
+                case '(' -> Kind.OPEN_PAREN;
+                case ')' -> Kind.CLOSE_PAREN;
+                case '[' -> Kind.OPEN_BRACKET;
+                case ']' -> Kind.CLOSE_BRACKET;
+                case ',' -> Kind.COMMA;
+                default -> Kind.INVALID;
+            };
+            if (kind == Kind.INVALID) {
+                tokens.add(new Token(Kind.INVALID, "unexpected character '" + c + "'", start, start + 1, null));
+                return tokens;
+            }
+            i++;
+            // <=, >= and ==
+            if (kind == Kind.COMPARATOR && i < length && source.charAt(i) == '=') {
+                i++;
+            }
+            tokens.add(new Token(kind, source.substring(start, i), start, i, null));
+        }
+        return tokens;
+    }
+
+    /**
+     * @return the invalid token ending a token list, or null if it was fully tokenized
+     */
+    public static Token invalid(List<Token> tokens) {
+        return !tokens.isEmpty() && tokens.getLast().kind == Kind.INVALID ? tokens.getLast() : null;
+    }
+
+    /**
+     * Finds the token closing a parenthesis or bracket, counting only tokens of the same kind.
+     * @param open index of the opening token
+     * @param to index to stop searching at
+     * @return index of the closing token, or -1 if it isn't closed before to
+     */
+    public static int closing(List<Token> tokens, int open, int to) {
+        Kind opening = tokens.get(open).kind, closing = opening == Kind.OPEN_PAREN ? Kind.CLOSE_PAREN : Kind.CLOSE_BRACKET;
+        int depth = 0;
+        for (int i = open; i < to; i++) {
+            if (tokens.get(i).kind == opening) {
+                depth++;
+            }
+            else if (tokens.get(i).kind == closing && --depth == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Splits a range of tokens at the tokens matching a kind and text that aren't inside parentheses or brackets.
+     * @return start and end indices of each part, which may be empty
+     */
+    public static List<int[]> split(List<Token> tokens, int from, int to, Kind kind, String text) {
+        List<int[]> parts = new ArrayList<>();
+        int depth = 0, start = from;
+        for (int i = from; i < to; i++) {
+            Token token = tokens.get(i);
+            switch (token.kind) {
+                case OPEN_PAREN, OPEN_BRACKET -> depth++;
+                case CLOSE_PAREN, CLOSE_BRACKET -> depth--;
+                default -> {
+                    if (depth == 0 && token.is(kind, text)) {
+                        parts.add(new int[]{start, i});
+                        start = i + 1;
+                    }
+                }
+            }
+        }
+        parts.add(new int[]{start, to});
+        return parts;
+    }
+
+    /**
+     * @return the first parenthesis or bracket that is closed without being opened or never closed, or null if they
+     * are all matched
+     */
+    public static Token unmatched(List<Token> tokens) {
+        Deque<Token> open = new ArrayDeque<>();
+        for (Token token : tokens) {
+            switch (token.kind) {
+                case OPEN_PAREN, OPEN_BRACKET -> open.push(token);
+                case CLOSE_PAREN, CLOSE_BRACKET -> {
+                    if (open.isEmpty() || open.pop().kind != (token.kind == Kind.CLOSE_PAREN ? Kind.OPEN_PAREN :
+                            Kind.OPEN_BRACKET)) {
+                        return token;
+                    }
+                }
+                default -> {}
+            }
+        }
+        return open.peekLast();
+    }
+
+    /**
+     * @return a description of a position for error messages, with a 1-based column counted from the first
+     * non-whitespace character
+     */
+    public static String at(String source, int position) {
+        int leading = 0;
+        while (leading < source.length() && Character.isWhitespace(source.charAt(leading))) {
+            leading++;
+        }
+        return " at column " + (Math.max(position - leading, 0) + 1) + " of \"" + source.strip() + "\"";
+    }
+
+    private static boolean isIdentifierStart(char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c == '_';
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Lexer.isIdentifierStart(c) || c >= '0' && c <= '9';
+    }
+
+}
@@ -22,6 +22,15 @@ public interface Operator {
         private long longVal;
         private double doubleVal;
 
+        public NumberOperator(long value) {
+            this.longVal = value;
+        }
+
+        public NumberOperator(double value) {
+            this.isLong = false;
+            this.doubleVal = value;
+        }
+
         public NumberOperator(Number value) {
             if (value instanceof Integer || value instanceof Long) {
                 this.longVal = value.longValue();
@@ -32,21 +41,12 @@ public interface Operator {
             }
         }
 
-        public static NumberOperator fromString(String s) {
-            try {
-                return new NumberOperator(Long.parseLong(s));
-            }
-            catch (NumberFormatException e) {
-                try {
-                    if (s.endsWith("s")) {
-                        return new NumberOperator(Double.parseDouble(s.substring(0, s.length() - 1)));
-                    }
-                    return new NumberOperator(Double.parseDouble(s));
-                }
-                catch (NumberFormatException f) {
-                    return null;
-                }
-            }
+        public boolean isLong() {
+            return this.isLong;
+        }
+
+        public long getLongValue() {
+            return this.isLong ? this.longVal : (long) this.doubleVal;
         }
 
         public double getDoubleValue() {
@@ -82,8 +82,8 @@ public interface Operator {
                                 Math.pow(second.getDoubleValue(), this.getDoubleValue()));
                     }
                     case "%" -> {
-                        return new NumberOperator((this.isLong && second.isLong) ? (Number) (this.longVal % second.longVal) : (Number)
-                                (this.getDoubleValue() % second.getDoubleValue()));
+                        return new NumberOperator((this.isLong && second.isLong) ? (Number) (second.longVal % this.longVal) : (Number)
+                                (second.getDoubleValue() % this.getDoubleValue()));
                     }
                 }
             }
@@ -162,12 +162,18 @@ public interface Operator {
             return this.str.equals(other.getValue().toString());
         }
 
+        /**
+         * Strings cast to any numeric type are 0 of that type, so a fetched variable always holds its declared type.
+         */
         @Override
         public Object toType(int type) {
-            if (type < 4) {
-                return 0;
-            }
-            return this.str;
+            return switch (type) {
+                case 0 -> 0;
+                case 1 -> 0L;
+                case 2 -> 0f;
+                case 3 -> 0d;
+                default -> this.str;
+            };
         }
 
     }
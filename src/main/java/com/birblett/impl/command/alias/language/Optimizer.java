@@ -0,0 +1,269 @@
+package com.birblett.impl.command.alias.language;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Optimization pass run over compiled instructions before an alias is registered. Folds constant expressions,
+ * resolves constant conditions, threads jumps through other jumps, and drops instructions that are unreachable or
+ * do nothing, remapping jump addresses afterward. Self-calls that are only followed by returning are then marked as
+ * tail calls, and expressions are specialized to the kinds of values their variables are proven to hold.
+ */
+public class Optimizer {
+
+    private final List<Instruction> code;
+    private final int[] lines;
+    private final boolean[] removed;
+
+    /**
+     * @param instructions optimized instructions
+     * @param lines index of the source line each instruction was compiled from
+     */
+    public record Program(List<Instruction> instructions, int[] lines) {}
+
+    private Optimizer(List<Instruction> instructions, int[] lines) {
+        // jumps are retargeted, so work on copies to leave the compiler's output reusable
+        this.code = new ArrayList<>(instructions.size());
+        for (Instruction instruction : instructions) {
+            this.code.add(instruction instanceof Instruction.Jump jump ? jump.copy() : instruction);
+        }
+        this.lines = lines;
+        this.removed = new boolean[instructions.size()];
+    }
+
+    /**
+     * @param instructions compiled instructions, left unmodified apart from folding of their expressions
+     * @return an equivalent, optimized list of instructions
+     */
+    public static List<Instruction> optimize(List<Instruction> instructions) {
+        return Optimizer.optimize(instructions, null, List.of());
+    }
+
+    /**
+     * @param instructions compiled instructions, left unmodified apart from folding of their expressions
+     * @param self name of the alias being compiled, for finding tail calls; null to skip
+     * @param arguments argument definitions in slot order, whose kinds are known without being written
+     * @return an equivalent, optimized list of instructions
+     */
+    public static List<Instruction> optimize(List<Instruction> instructions, String self, Collection<Variable.Definition>
+            arguments) {
+        return Optimizer.optimize(instructions, new int[instructions.size()], self, arguments).instructions();
+    }
+
+    /**
+     * @param lines index of the source line each instruction was compiled from
+     * @return an equivalent, optimized program, with the source lines of the instructions that remain
+     */
+    public static Program optimize(List<Instruction> instructions, int[] lines, String self, Collection<Variable
+            .Definition> arguments) {
+        Optimizer optimizer = new Optimizer(instructions, lines);
+        optimizer.fold();
+        optimizer.threadJumps();
+        optimizer.removeUnreachable();
+        optimizer.removeFallthroughJumps();
+        Program out = optimizer.compact();
+        if (self != null) {
+            Optimizer.markTailCalls(out.instructions(), self);
+        }
+        return new Program(Optimizer.specialize(out.instructions(), arguments), out.lines());
+    }
+
+    /**
+     * Folds constant subexpressions, then replaces conditions that always pass with nothing and conditions that always
+     * fail with an unconditional jump.
+     */
+    private void fold() {
+        for (int i = 0; i < this.code.size(); i++) {
+            Instruction instruction = this.code.get(i);
+            if (instruction instanceof Instruction.Let let) {
+                let.fold();
+            }
+            else if (instruction instanceof Instruction.Return ret) {
+                ret.fold();
+            }
+            else if (instruction instanceof Instruction.Sleep sleep) {
+                sleep.fold();
+            }
+            else if (instruction instanceof Instruction.Call call) {
+                call.fold();
+            }
+            else if (instruction instanceof Instruction.Store store) {
+                store.fold();
+            }
+            else if (instruction instanceof Instruction.For loop) {
+                loop.fold();
+            }
+            else if (instruction instanceof Instruction.If condition) {
+                condition.fold();
+                Boolean result = condition.constantResult();
+                if (result == null) {
+                    continue;
+                }
+                if (result) {
+                    this.removed[i] = true;
+                }
+                else {
+                    this.code.set(i, new Instruction.Jump(condition.jumpTo));
+                }
+            }
+        }
+    }
+
+    /**
+     * Retargets every jump that lands on an unconditional jump to that jump's final destination.
+     */
+    private void threadJumps() {
+        for (int i = 0; i < this.code.size(); i++) {
+            if (!this.removed[i] && this.code.get(i) instanceof Instruction.Jump jump) {
+                jump.jumpTo = this.resolve(jump.jumpTo);
+            }
+        }
+    }
+
+    /**
+     * Marks instructions that no path from the first instruction reaches as removed.
+     */
+    private void removeUnreachable() {
+        boolean[] reachable = new boolean[this.code.size()];
+        Deque<Integer> queue = new ArrayDeque<>();
+        queue.add(this.skipRemoved(0));
+        while (!queue.isEmpty()) {
+            int i = queue.poll();
+            if (i < 0 || i >= this.code.size() || reachable[i]) {
+                continue;
+            }
+            reachable[i] = true;
+            Instruction instruction = this.code.get(i);
+            if (instruction instanceof Instruction.Jump jump) {
+                queue.add(this.skipRemoved(jump.jumpTo));
+                if (!isUnconditional(instruction)) {
+                    queue.add(this.skipRemoved(i + 1));
+                }
+            }
+            else if (!(instruction instanceof Instruction.Return)) {
+                queue.add(this.skipRemoved(i + 1));
+            }
+        }
+        for (int i = 0; i < this.code.size(); i++) {
+            this.removed[i] |= !reachable[i];
+        }
+    }
+
+    /**
+     * Marks unconditional jumps to the next remaining instruction as removed.
+     */
+    private void removeFallthroughJumps() {
+        for (int i = 0; i < this.code.size(); i++) {
+            if (!this.removed[i] && isUnconditional(this.code.get(i)) && this.skipRemoved(((Instruction.Jump) this.code
+                    .get(i)).jumpTo) == this.skipRemoved(i + 1)) {
+                this.removed[i] = true;
+            }
+        }
+    }
+
+    /**
+     * Drops removed instructions and remaps jump addresses to the compacted positions.
+     */
+    private Program compact() {
+        int[] address = new int[this.code.size() + 1], lines = new int[this.code.size()];
+        List<Instruction> out = new ArrayList<>();
+        for (int i = 0; i < this.code.size(); i++) {
+            address[i] = out.size();
+            if (!this.removed[i]) {
+                lines[out.size()] = this.lines[i];
+                out.add(this.code.get(i));
+            }
+        }
+        address[this.code.size()] = out.size();
+        for (Instruction instruction : out) {
+            if (instruction instanceof Instruction.Jump jump && jump.jumpTo >= 0) {
+                jump.jumpTo = address[Math.min(jump.jumpTo, this.code.size())];
+            }
+        }
+        return new Program(out, Arrays.copyOf(lines, out.size()));
+    }
+
+    /**
+     * Marks calls to the alias itself as tail calls if all that's left after them is returning nothing, returning null
+     * or returning the variable the result was assigned to. Call instructions are shared with the compiler's output, so
+     * this is redone on every optimization.
+     */
+    private static void markTailCalls(List<Instruction> code, String self) {
+        for (int i = 0; i < code.size(); i++) {
+            if (!(code.get(i) instanceof Instruction.Call call)) {
+                continue;
+            }
+            int mode = Instruction.Call.RETURN_INVALID;
+            if (call.getTargetName().equals(self)) {
+                int next = i + 1;
+                for (int steps = 0; steps <= code.size() && next >= 0 && next < code.size() &&
+                        isUnconditional(code.get(next)); steps++) {
+                    next = ((Instruction.Jump) code.get(next)).jumpTo;
+                }
+                if (next >= code.size()) {
+                    mode = Instruction.Call.RETURN_NOTHING;
+                }
+                else if (next >= 0 && code.get(next) instanceof Instruction.Return ret) {
+                    Instruction.Fetch assign = call.getAssign();
+                    if (ret.getExpression() == null) {
+                        mode = Instruction.Call.RETURN_NULL;
+                    }
+                    else if (assign != null && ret.getExpression() instanceof Expression.Slot slot && slot.slot() ==
+                            assign.getSlot()) {
+                        mode = assign.getType();
+                    }
+                }
+            }
+            call.setTailReturnMode(mode);
+        }
+    }
+
+    /**
+     * Proves the kind of every slot, then replaces instructions with copies that compute and compare values on the
+     * kinds they are known to have instead of checking them as they run. Anything whose kind can't be proven is left
+     * as it was.
+     */
+    private static List<Instruction> specialize(List<Instruction> code, Collection<Variable.Definition> arguments) {
+        SlotKinds kinds = new SlotKinds();
+        int slot = 0;
+        for (Variable.Definition argument : arguments) {
+            kinds.write(slot++, SlotKinds.ofClass(argument.type.clazz()));
+        }
+        kinds.infer(code);
+        List<Instruction> out = new ArrayList<>(code.size());
+        for (Instruction instruction : code) {
+            out.add(instruction.specialize(kinds));
+        }
+        return out;
+    }
+
+    /**
+     * Follows a jump target through removed instructions and unconditional jumps, stopping if it cycles.
+     */
+    private int resolve(int target) {
+        for (int steps = 0; steps <= this.code.size(); steps++) {
+            target = this.skipRemoved(target);
+            if (target < 0 || target >= this.code.size() || !isUnconditional(this.code.get(target))) {
+                break;
+            }
+            target = ((Instruction.Jump) this.code.get(target)).jumpTo;
+        }
+        return target;
+    }
+
+    private int skipRemoved(int target) {
+        while (target >= 0 && target < this.code.size() && this.removed[target]) {
+            target++;
+        }
+        return target;
+    }
+
+    private static boolean isUnconditional(Instruction instruction) {
+        return instruction instanceof Instruction.Jump jump && !jump.isConditional();
+    }
+
+}
@@ -0,0 +1,62 @@
+package com.birblett.impl.command.alias.language;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary encoding of compiled programs. Strings are written as a length followed by their UTF-8 bytes, so that they
+ * can be read straight from a {@link ByteBuffer} such as a memory-mapped file.
+ */
+public class ProgramCodec {
+
+    public static void writeProgram(DataOutput out, List<Instruction> program) throws IOException {
+        out.writeInt(program.size());
+        for (Instruction instruction : program) {
+            Instruction.write(out, instruction);
+        }
+    }
+
+    /**
+     * @throws IllegalStateException if the data is malformed
+     */
+    public static List<Instruction> readProgram(ByteBuffer in) {
+        int size = in.getInt();
+        List<Instruction> program = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            program.add(Instruction.read(in));
+        }
+        return program;
+    }
+
+    public static void writeString(DataOutput out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    public static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public static void writeStrings(DataOutput out, String[] strings) throws IOException {
+        out.writeInt(strings.length);
+        for (String s : strings) {
+            ProgramCodec.writeString(out, s);
+        }
+    }
+
+    public static String[] readStrings(ByteBuffer in) {
+        String[] strings = new String[in.getInt()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = ProgramCodec.readString(in);
+        }
+        return strings;
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.birblett.impl.command.alias.language;
+
+import com.mojang.brigadier.LiteralMessage;
+import com.mojang.brigadier.StringReader;
+import com.mojang.brigadier.arguments.ArgumentType;
+import com.mojang.brigadier.context.CommandContext;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import com.mojang.brigadier.exceptions.DynamicCommandExceptionType;
+import com.mojang.brigadier.suggestion.Suggestions;
+import com.mojang.brigadier.suggestion.SuggestionsBuilder;
+import net.minecraft.command.CommandSource;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Argument type for alias selection arguments, accepting exactly one of a fixed set of options. Sent to clients as a
+ * single word string argument, see {@link com.birblett.mixin.command.ArgumentTypesMixin}, with suggestions asked of the
+ * server.
+ */
+public class SelectionArgumentType implements ArgumentType<String> {
+
+    private static final DynamicCommandExceptionType INVALID_OPTION = new DynamicCommandExceptionType(option ->
+            new LiteralMessage("Invalid selection \"" + option + "\""));
+    private final Set<String> options;
+
+    public SelectionArgumentType(String[] options) {
+        this.options = new LinkedHashSet<>(Arrays.asList(options));
+    }
+
+    /**
+     * Clients parse selections as single words, see {@link com.birblett.mixin.command.ArgumentTypesMixin}, so options
+     * have to be made up of characters allowed in unquoted strings to be typed at all.
+     * @return the first option that can't be typed as a single word, or null if all of them can
+     */
+    public static String findUntypeableOption(String[] options) {
+        for (String option : options) {
+            if (option.isEmpty() || !option.chars().allMatch(c -> StringReader.isAllowedInUnquotedString((char) c))) {
+                return option;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads a single word, same as clients do.
+     */
+    @Override
+    public String parse(StringReader reader) throws CommandSyntaxException {
+        int start = reader.getCursor();
+        String option = reader.readUnquotedString();
+        if (!this.options.contains(option)) {
+            reader.setCursor(start);
+            throw INVALID_OPTION.createWithContext(reader, option);
+        }
+        return option;
+    }
+
+    @Override
+    public <S> CompletableFuture<Suggestions> listSuggestions(CommandContext<S> context, SuggestionsBuilder builder) {
+        return CommandSource.suggestMatching(this.options, builder);
+    }
+
+    @Override
+    public Collection<String> getExamples() {
+        return this.options.stream().limit(3).toList();
+    }
+
+}
@@ -0,0 +1,124 @@
+package com.birblett.impl.command.alias.language;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Kinds of the values each frame slot of a program holds, proven over every instruction that writes to it so that
+ * expressions reading it can be specialized ahead of time by the {@link Optimizer}. A slot's kind is only known if every
+ * write to it stores the same kind; slots holding lists or maps also track the kind of their elements.
+ */
+public class SlotKinds {
+
+    // kind of a slot written with more than one kind, or never written at all
+    public static final byte DYNAMIC = -1;
+    private byte[] kinds = new byte[0];
+    private byte[] elements = new byte[0];
+    private boolean changed = false;
+    // once set, slots nothing writes to are dynamic rather than not yet known
+    private boolean settled = false;
+
+    /**
+     * Records the kinds every instruction writes until nothing changes. Slots that are never written are then made
+     * dynamic, and inference is repeated, since reading them gives whatever an unset slot reads as.
+     */
+    public void infer(List<Instruction> code) {
+        for (int pass = 0; pass < 2; pass++) {
+            do {
+                this.changed = false;
+                for (Instruction instruction : code) {
+                    instruction.recordKinds(this);
+                }
+            } while (this.changed);
+            this.settled = true;
+        }
+    }
+
+    /**
+     * @return kind of a slot, {@link Frame#UNSET} if nothing is known to write to it yet, or {@link SlotKinds#DYNAMIC}
+     */
+    public byte get(int slot) {
+        byte kind = slot < this.kinds.length ? this.kinds[slot] : Frame.UNSET;
+        return kind == Frame.UNSET && this.settled ? DYNAMIC : kind;
+    }
+
+    /**
+     * @return kind of the elements of a list or map slot, as in {@link SlotKinds#get(int)}
+     */
+    public byte getElements(int slot) {
+        byte kind = slot < this.elements.length ? this.elements[slot] : Frame.UNSET;
+        return kind == Frame.UNSET && this.settled ? DYNAMIC : kind;
+    }
+
+    /**
+     * Records a write of a single value to a slot.
+     */
+    public void write(int slot, byte kind) {
+        if (kind != Frame.UNSET) {
+            this.ensure(slot);
+            this.kinds[slot] = this.join(this.kinds[slot], kind);
+            // only declarations put lists and maps in slots
+            this.elements[slot] = this.join(this.elements[slot], DYNAMIC);
+        }
+    }
+
+    /**
+     * Records the declaration of a list or map in a slot.
+     * @param type element type, as in {@link AliasConstants#TYPE_VALUE_MAP}
+     */
+    public void declare(int slot, int type) {
+        this.ensure(slot);
+        this.kinds[slot] = this.join(this.kinds[slot], Frame.OBJECT);
+        this.elements[slot] = this.join(this.elements[slot], SlotKinds.ofType(type));
+    }
+
+    /**
+     * @return kind of a value of a type, as in {@link AliasConstants#TYPE_VALUE_MAP}; floats are read as doubles
+     */
+    public static byte ofType(int type) {
+        return type <= 1 ? Frame.LONG : type <= 3 ? Frame.DOUBLE : Frame.OBJECT;
+    }
+
+    /**
+     * @return kind of a value of an argument class, as stored by the dispatcher or a [call]
+     */
+    public static byte ofClass(Class<?> clazz) {
+        return SlotKinds.ofType(AliasConstants.TYPE_MAP.getOrDefault(clazz, 4));
+    }
+
+    /**
+     * @return kind of arithmetic on two kinds, the same as {@link Expression.Binary} decides at runtime
+     */
+    public static byte arithmetic(byte left, byte right) {
+        if (left == DYNAMIC || right == DYNAMIC) {
+            return DYNAMIC;
+        }
+        if (left == Frame.UNSET || right == Frame.UNSET) {
+            return Frame.UNSET;
+        }
+        if (left == Frame.OBJECT || right == Frame.OBJECT) {
+            return Frame.OBJECT;
+        }
+        return left == Frame.LONG && right == Frame.LONG ? Frame.LONG : Frame.DOUBLE;
+    }
+
+    private byte join(byte a, byte b) {
+        if (a == b || b == Frame.UNSET) {
+            return a;
+        }
+        if (a == Frame.UNSET) {
+            this.changed = true;
+            return b;
+        }
+        this.changed |= a != DYNAMIC;
+        return DYNAMIC;
+    }
+
+    private void ensure(int slot) {
+        if (slot >= this.kinds.length) {
+            this.kinds = Arrays.copyOf(this.kinds, slot + 1);
+            this.elements = Arrays.copyOf(this.elements, slot + 1);
+        }
+    }
+
+}
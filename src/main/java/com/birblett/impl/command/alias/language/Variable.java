@@ -2,6 +2,8 @@ package com.birblett.impl.command.alias.language;
 
 import com.mojang.brigadier.arguments.ArgumentType;
 
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.function.Function;
 
 /**
@@ -29,12 +31,59 @@ public record Variable(Definition type, Object value) {
         public final String typeName;
         public final Entry<?> type;
         public final String[] args;
+        public final int slot;
 
-        public Definition(String name, String type, String[] args) {
+        public Definition(String name, String type, String[] args, int slot) {
             this.name = name;
             this.typeName = type;
             this.type = AliasConstants.ARGUMENT_TYPES.getOrDefault(type, AliasConstants.ARGUMENT_TYPES.get("string"));
             this.args = args;
+            this.slot = slot;
+        }
+
+        public Definition(String name, String type, String[] args) {
+            this(name, type, args, -1);
+        }
+
+        /**
+         * New variables are always declared in the innermost scope, so live variables always occupy slots 0 to n-1 and
+         * slots of a scope that has ended are reused by the next declarations.
+         * @param vars compiler scope list
+         * @return the frame slot for a newly declared variable
+         */
+        public static int nextSlot(List<LinkedHashMap<String, Definition>> vars) {
+            int slot = 0;
+            for (LinkedHashMap<String, Definition> varMap : vars) {
+                slot += varMap.size();
+            }
+            return slot;
+        }
+
+        /**
+         * Finds a variable in any scope in which it is declared.
+         * @return the definition, or null if it isn't declared
+         */
+        public static Definition find(String name, List<LinkedHashMap<String, Definition>> vars) {
+            for (LinkedHashMap<String, Definition> varMap : vars) {
+                if (varMap.containsKey(name)) {
+                    return varMap.get(name);
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @return whether this is a local list or map, declared with [list] or [map], rather than a single value
+         */
+        public boolean isCollection() {
+            return "list".equals(this.typeName) || "map".equals(this.typeName);
+        }
+
+        /**
+         * @return element type of a list or map, as in {@link AliasConstants#TYPE_VALUE_MAP}
+         */
+        public int elementType() {
+            return AliasConstants.TYPE_VALUE_MAP.getOrDefault(this.args.length > 0 ? this.args[0] : "", 4);
         }
 
         public ArgumentType<?> getArgumentType() {
@@ -115,8 +115,8 @@ public class DelayCommand {
     }
 
     private static CompletableFuture<Suggestions> getIdSuggestions(CommandContext<ServerCommandSource> context, SuggestionsBuilder builder) {
-        return CommandSource.suggestMatching(((CommandScheduler) context.getSource().getServer().getSaveProperties()
-                .getMainWorldProperties().getScheduledEvents()).technicalToolbox$GetCommandEventMap().keySet(), builder);
+        return ((CommandScheduler) context.getSource().getServer().getSaveProperties().getMainWorldProperties()
+                .getScheduledEvents()).technicalToolbox$GetCommandIds().suggest(builder);
     }
 
     private static int remove(CommandContext<ServerCommandSource> context) {
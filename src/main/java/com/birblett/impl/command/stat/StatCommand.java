@@ -203,7 +203,7 @@ public class StatCommand {
      * @return suggestions containing existing compound stats.
      */
     private static CompletableFuture<Suggestions> getCompoundSuggestions(CommandContext<ServerCommandSource> context, SuggestionsBuilder builder) {
-        return CommandSource.suggestMatching(TrackedStatManager.getCompoundNames(), builder);
+        return TrackedStatManager.COMPOUND_NAMES.suggest(builder);
     }
 
     /**
@@ -219,7 +219,7 @@ public class StatCommand {
             ScoreboardObjective objective = TrackedStatManager.createNewObjective(context.getSource().getServer(), objectiveName,
                     ScoreboardCriterion.DUMMY, text);
             TrackedStatManager.TRACKED_STATS.add(objective);
-            TrackedStatManager.TRACKED_COMPOUNDS.add(new CompoundStat(objective, new HashSet<>()));
+            TrackedStatManager.addCompound(new CompoundStat(objective, new HashSet<>()));
             for (ServerPlayerEntity player : context.getSource().getServer().getPlayerManager().getPlayerList()) {
                 ((StatTracker) player).technicalToolbox$UpdateObjective(objective);
             }
@@ -28,6 +28,7 @@ package com.birblett.impl.command.stat;
 
 import com.birblett.TechnicalToolbox;
 import com.birblett.impl.config.ConfigOptions;
+import com.birblett.util.PrefixIndex;
 import com.birblett.util.ServerUtil;
 import com.mojang.authlib.GameProfile;
 import com.mojang.authlib.minecraft.MinecraftSessionService;
@@ -54,6 +55,7 @@ import java.util.*;
 public class TrackedStatManager {
 
     public static HashSet<CompoundStat> TRACKED_COMPOUNDS = new HashSet<>();
+    public static final PrefixIndex COMPOUND_NAMES = new PrefixIndex();
     public static HashSet<ScoreboardObjective> TRACKED_STATS = new HashSet<>();
     public static HashMap<ScoreboardCriterion, HashSet<CompoundStat>> CRITERION_LISTENERS = new HashMap<>();
     public static String COMPOUND_STAT_PREFIX = "technical_toolbox.compound_stats.";
@@ -64,14 +66,28 @@ public class TrackedStatManager {
     public static MinecraftServer SERVER = null;
 
     /**
-     * Get all compound stat names, without the prefix.
+     * Get a compound stat's name, without the prefix.
      */
-    public static Collection<String> getCompoundNames() {
-        ArrayList<String> list = new ArrayList<>();
-        for (CompoundStat stat : TRACKED_COMPOUNDS) {
-            list.add(stat.objective.getName().replaceFirst(COMPOUND_STAT_REGEX, ""));
+    public static String getCompoundName(CompoundStat stat) {
+        String name = stat.objective.getName();
+        return name.startsWith(COMPOUND_STAT_PREFIX) ? name.substring(COMPOUND_STAT_PREFIX.length()) : name;
+    }
+
+    /**
+     * Tracks a compound stat, indexing its name for suggestions.
+     */
+    public static void addCompound(CompoundStat stat) {
+        if (TRACKED_COMPOUNDS.add(stat)) {
+            COMPOUND_NAMES.add(TrackedStatManager.getCompoundName(stat));
         }
-        return list;
+    }
+
+    /**
+     * Untracks all compound stats.
+     */
+    public static void clearCompounds() {
+        TRACKED_COMPOUNDS.clear();
+        COMPOUND_NAMES.clear();
     }
 
     /**
@@ -90,7 +106,16 @@ public class TrackedStatManager {
      * Untracks a compound stat or an objective, does nothing otherwise.
      */
     public static void maybeRemoveScore(Object obj) {
-        if (!TRACKED_COMPOUNDS.removeIf(compound -> compound.equals(obj))) {
+        boolean removed = false;
+        for (Iterator<CompoundStat> iterator = TRACKED_COMPOUNDS.iterator(); iterator.hasNext(); ) {
+            CompoundStat compound = iterator.next();
+            if (compound.equals(obj)) {
+                iterator.remove();
+                COMPOUND_NAMES.remove(TrackedStatManager.getCompoundName(compound));
+                removed = true;
+            }
+        }
+        if (!removed) {
             if (obj instanceof ScoreboardObjective objective) {
                 TRACKED_STATS.remove(objective);
             }
@@ -275,7 +300,7 @@ public class TrackedStatManager {
                             CompoundStat stat = CompoundStat.deserialize(server, line, i);
                             if (stat != null) {
                                 stat.isGlobal = global;
-                                TRACKED_COMPOUNDS.add(stat);
+                                TrackedStatManager.addCompound(stat);
                                 TrackedStatManager.refreshCompound(server, stat, profiles);
                                 j++;
                             }
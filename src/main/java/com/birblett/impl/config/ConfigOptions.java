@@ -34,21 +34,44 @@ public class ConfigOptions {
             "Maximum number of instructions (not lines) that an alias can execute. " +
                     "Also accounts for alias recursion. Set to -1 for no limit.",
             -1, Integer.MAX_VALUE, "-1", "20");
+    public static final ConfigOption<Boolean> ALIAS_LAZY_COMPILE = ConfigOption.boolConfig(
+            "aliasLazyCompile", false,
+            "If enabled, aliases loaded from storage are only compiled when first executed, " +
+                    "instead of when the server starts.");
     public static final ConfigOption<Integer> ALIAS_MAX_RECURSION_DEPTH = ConfigOption.intConfig(
             "aliasMaxRecursionDepth", 500,
-            "Maximum number of recursive calls. Setting too high may result in " +
-                    "stack overflow for some recursive programs.",
+            "Maximum number of recursive calls. Aliases called with [call] don't use " +
+                    "the Java stack and self tail calls don't count, but setting too high " +
+                    "may result in stack overflow for aliases that run each other as commands.",
             0, Integer.MAX_VALUE, "500");
     public static final ConfigOption<Boolean> ALIAS_MODIFY_COMPILE = ConfigOption.boolConfig(
             "aliasCompileOnModification", true,
             "Whether aliases should be compiled whenever they are modified. When false, " +
                     "they can instead be compiled with /alias compile.");
+    public static final ConfigOption<Integer> ALIAS_PARSE_CACHE_SIZE = ConfigOption.intConfig(
+            "aliasParseCacheSize", 64,
+            "Number of parsed command lines each alias keeps cached, so repeated lines are not " +
+                    "re-parsed. Set to 0 to disable.",
+            0, Integer.MAX_VALUE,
+            "0", "64");
     public static final ConfigOption<Integer> ALIAS_RECYCLE_BIN_SIZE = ConfigOption.intConfig(
             "aliasRecycleBinSize", 20,
             "Size of the recycle bin for old or unused alias files. Older files are " +
                     "recycled after hitting the limit. Set to -1 for no limit.",
             -1, 20,
             "0", "-1", "20");
+    public static final ConfigOption<Integer> ALIAS_RESULT_CACHE_SIZE = ConfigOption.intConfig(
+            "aliasResultCacheSize", 32,
+            "Number of results each pure alias keeps cached by argument values. Aliases are pure if they " +
+                    "run no commands and only call other pure aliases. Set to 0 to disable.",
+            0, Integer.MAX_VALUE,
+            "0", "32");
+    public static final ConfigOption<Integer> ALIAS_TICK_BUDGET = ConfigOption.intConfig(
+            "aliasTickBudget", -1,
+            "Time in microseconds that aliases can run for each tick. Aliases that run out of time continue " +
+                    "on the next tick, and the instruction limit applies to each tick separately. Set to -1 for no limit.",
+            -1, Integer.MAX_VALUE,
+            "-1", "5000");
     public static final ConfigOption<String> CAMERA_COMMAND = new ConfigOption<>(
             "cameraCommand", "cam",
             "Camera command string, usage /[cmd string].",
@@ -99,6 +122,10 @@ public class ConfigOptions {
             "Permission level required to use the camera command.",
             0, 4, true,
             "0", "4");
+    public static final ConfigOption<Boolean> COMMAND_TREE_CACHE = ConfigOption.boolConfig(
+            "commandTreeCache", false,
+            "If enabled, players with the same permission level share one command tree instead of it being " +
+                    "rebuilt for each player. Only enable if no other mod limits commands by anything else.", true);
     public static final ConfigOption<String> DELAY_COMMAND = new ConfigOption<>(
             "delayCommand", "delay",
             "Command scheduling command string, usage /[cmd string] <delay> <command>.",
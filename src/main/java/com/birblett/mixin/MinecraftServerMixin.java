@@ -1,6 +1,7 @@
 package com.birblett.mixin;
 
 import com.birblett.TechnicalToolbox;
+import com.birblett.impl.command.alias.AliasScheduler;
 import com.birblett.impl.command.stat.TrackedStatManager;
 import com.birblett.util.ServerUtil;
 import net.minecraft.scoreboard.ScoreboardObjective;
@@ -14,6 +15,8 @@ import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
+import java.util.function.BooleanSupplier;
+
 /**
  * Config and alias initialize and cleanup.
  */
@@ -25,7 +28,7 @@ public class MinecraftServerMixin {
 
     @Inject(method = "loadWorld", at = @At("HEAD"))
     private void resetStatistics(CallbackInfo ci) {
-        TrackedStatManager.TRACKED_COMPOUNDS.clear();
+        TrackedStatManager.clearCompounds();
         TrackedStatManager.TRACKED_STATS.clear();
     }
 
@@ -46,6 +49,11 @@ public class MinecraftServerMixin {
         ServerUtil.refreshCommandTree(server);
     }
 
+    @Inject(method = "tick", at = @At("TAIL"))
+    private void resumeAliases(BooleanSupplier shouldKeepTicking, CallbackInfo ci) {
+        AliasScheduler.tick((MinecraftServer) (Object) this);
+    }
+
     @Inject(method = "shutdown", at = @At("HEAD"))
     private void serverStopped(CallbackInfo ci) {
         if (this.configurable) {
@@ -55,6 +63,7 @@ public class MinecraftServerMixin {
             TrackedStatManager.saveTrackedStats(server);
             this.configurable = false;
         }
+        ServerUtil.onServerClose();
     }
 
 }
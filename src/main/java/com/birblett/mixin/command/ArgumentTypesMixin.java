@@ -0,0 +1,23 @@
+package com.birblett.mixin.command;
+
+import com.birblett.impl.command.alias.language.SelectionArgumentType;
+import com.mojang.brigadier.arguments.ArgumentType;
+import com.mojang.brigadier.arguments.StringArgumentType;
+import net.minecraft.command.argument.ArgumentTypes;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.ModifyVariable;
+
+/**
+ * Serializes alias selection arguments as single word strings, since clients don't know about custom argument types.
+ */
+@Mixin(ArgumentTypes.class)
+public class ArgumentTypesMixin {
+
+    @ModifyVariable(method = "getArgumentTypeProperties(Lcom/mojang/brigadier/arguments/ArgumentType;)Lnet/minecraft/command/argument/serialize/ArgumentSerializer$ArgumentTypeProperties;",
+            at = @At("HEAD"), argsOnly = true)
+    private static ArgumentType<?> serializeSelectionAsString(ArgumentType<?> argumentType) {
+        return argumentType instanceof SelectionArgumentType ? StringArgumentType.word() : argumentType;
+    }
+
+}
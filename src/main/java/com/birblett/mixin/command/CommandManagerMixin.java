@@ -8,24 +8,43 @@ import com.birblett.impl.command.alias.AliasManager;
 import com.birblett.impl.command.alias.AliasedCommand;
 import com.birblett.impl.command.delay.DelayCommand;
 import com.birblett.impl.command.stat.StatCommand;
+import com.birblett.impl.config.ConfigOptions;
+import com.birblett.util.ServerUtil;
 import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.tree.CommandNode;
+import com.mojang.brigadier.tree.RootCommandNode;
 import net.minecraft.command.CommandRegistryAccess;
+import net.minecraft.command.CommandSource;
+import net.minecraft.network.packet.s2c.play.CommandTreeS2CPacket;
 import net.minecraft.server.command.CommandManager;
 import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.server.network.ServerPlayerEntity;
 import org.spongepowered.asm.mixin.Final;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.Unique;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
 /**
- * Registers some custom commands. Aliases and camera command are registered on-demand as well.
+ * Registers some custom commands. Aliases and camera command are registered on-demand as well. Optionally caches the
+ * command tree packet sent to players.
  */
 @Mixin(CommandManager.class)
 public class CommandManagerMixin {
 
     @Shadow @Final private CommandDispatcher<ServerCommandSource> dispatcher;
+    // command tree packets by permission level, valid for the command tree version they were built for
+    @Unique private final CommandTreeS2CPacket[] commandTreePackets = new CommandTreeS2CPacket[5];
+    @Unique private int commandTreePacketVersion = ServerUtil.getCommandTreeVersion();
+
+    @Shadow private void makeTreeForSource(CommandNode<ServerCommandSource> tree, CommandNode<CommandSource> result,
+            ServerCommandSource source, Map<CommandNode<ServerCommandSource>, CommandNode<CommandSource>> resultNodes) {}
 
     @Inject(method = "<init>", at = @At("RETURN"))
     private void onRegister(CommandManager.RegistrationEnvironment environment, CommandRegistryAccess commandRegistryAccess, CallbackInfo ci) {
@@ -44,4 +63,32 @@ public class CommandManagerMixin {
         }
     }
 
+    /**
+     * Players with the same permission level see the same commands, since the toolbox's commands and aliases only
+     * require a permission level or a player source, so they can share one tree packet instead of the dispatcher being
+     * walked and every requirement tested again for each of them.
+     */
+    @Inject(method = "sendCommandTree", at = @At("HEAD"), cancellable = true)
+    private void sendCachedCommandTree(ServerPlayerEntity player, CallbackInfo ci) {
+        if (!ConfigOptions.COMMAND_TREE_CACHE.val()) {
+            return;
+        }
+        if (this.commandTreePacketVersion != ServerUtil.getCommandTreeVersion()) {
+            this.commandTreePacketVersion = ServerUtil.getCommandTreeVersion();
+            Arrays.fill(this.commandTreePackets, null);
+        }
+        int level = Math.clamp(player.getPermissionLevel(), 0, this.commandTreePackets.length - 1);
+        CommandTreeS2CPacket packet = this.commandTreePackets[level];
+        if (packet == null) {
+            Map<CommandNode<ServerCommandSource>, CommandNode<CommandSource>> map = new HashMap<>();
+            RootCommandNode<CommandSource> root = new RootCommandNode<>();
+            map.put(this.dispatcher.getRoot(), root);
+            this.makeTreeForSource(this.dispatcher.getRoot(), root, player.getCommandSource(), map);
+            packet = new CommandTreeS2CPacket(root);
+            this.commandTreePackets[level] = packet;
+        }
+        player.networkHandler.sendPacket(packet);
+        ci.cancel();
+    }
+
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package com.birblett.mixin.command.delay;
 
 import com.birblett.accessor.command.delay.CommandScheduler;
 import com.birblett.impl.command.delay.CommandEvent;
+import com.birblett.util.PrefixIndex;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.command.ServerCommandSource;
 import net.minecraft.world.timer.Timer;
@@ -22,12 +23,15 @@ public class TimerMixin<T> implements CommandScheduler {
 
     @Unique private final HashMap<String, CommandEvent> scheduledCommandMap = new HashMap<>();
 
+    @Unique private final PrefixIndex scheduledIds = new PrefixIndex();
+
     @Override
     public boolean technicalToolbox$AddCommandEvent(String command, long delay, String id, int priority, boolean silent, ServerCommandSource source) {
         if (!this.scheduledCommandMap.containsKey(id)) {
             CommandEvent e = new CommandEvent(id, command, delay, priority, silent, source);
             this.scheduledCommands.add(e);
             this.scheduledCommandMap.put(id, e);
+            this.scheduledIds.add(id);
             return true;
         }
         return false;
@@ -37,6 +41,7 @@ public class TimerMixin<T> implements CommandScheduler {
     public boolean technicalToolbox$RemoveCommandEvent(String id) {
         if (this.scheduledCommandMap.containsKey(id)) {
             this.scheduledCommands.remove(this.scheduledCommandMap.remove(id));
+            this.scheduledIds.remove(id);
             return true;
         }
         return false;
@@ -47,12 +52,18 @@ public class TimerMixin<T> implements CommandScheduler {
         return this.scheduledCommandMap;
     }
 
+    @Override
+    public PrefixIndex technicalToolbox$GetCommandIds() {
+        return this.scheduledIds;
+    }
+
     @Inject(method = "processEvents", at = @At("TAIL"))
     private void executeSchedule(T server, long time, CallbackInfo ci) {
         if (server instanceof MinecraftServer s) {
             while (this.scheduledCommands.peek() != null && this.scheduledCommands.peek().tick() <= time) {
                 CommandEvent e = this.scheduledCommands.remove();
                 this.scheduledCommandMap.remove(e.id());
+                this.scheduledIds.remove(e.id());
                 e.execute(s);
             }
         }
@@ -0,0 +1,165 @@
+package com.birblett.util;
+
+import com.mojang.brigadier.suggestion.Suggestions;
+import com.mojang.brigadier.suggestion.SuggestionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Prefix trie of names for command suggestions, kept up to date as names are added and removed so suggesting doesn't
+ * scan every name. Names match input the same way as {@code CommandSource.suggestMatching}: case-insensitively, from
+ * their start or from after any underscore, so each name is indexed once per underscore. Suggestions are capped at
+ * {@link PrefixIndex#LIMIT}, in alphabetical order of the matched part.
+ */
+public class PrefixIndex {
+
+    public static final int LIMIT = 256;
+    private final Set<String> names = new HashSet<>();
+    private final Node root = new Node();
+
+    private static class Node {
+
+        private char[] chars = new char[0];
+        private Node[] children = new Node[0];
+        private final List<String> names = new ArrayList<>(1);
+
+        private Node child(char c) {
+            int i = Arrays.binarySearch(this.chars, c);
+            return i >= 0 ? this.children[i] : null;
+        }
+
+        private Node getOrAddChild(char c) {
+            int i = Arrays.binarySearch(this.chars, c);
+            if (i >= 0) {
+                return this.children[i];
+            }
+            i = -i - 1;
+            Node child = new Node();
+            char[] chars = new char[this.chars.length + 1];
+            Node[] children = new Node[chars.length];
+            System.arraycopy(this.chars, 0, chars, 0, i);
+            System.arraycopy(this.children, 0, children, 0, i);
+            chars[i] = c;
+            children[i] = child;
+            System.arraycopy(this.chars, i, chars, i + 1, this.chars.length - i);
+            System.arraycopy(this.children, i, children, i + 1, this.children.length - i);
+            this.chars = chars;
+            this.children = children;
+            return child;
+        }
+
+        private void removeChild(char c) {
+            int i = Arrays.binarySearch(this.chars, c);
+            if (i < 0) {
+                return;
+            }
+            char[] chars = new char[this.chars.length - 1];
+            Node[] children = new Node[chars.length];
+            System.arraycopy(this.chars, 0, chars, 0, i);
+            System.arraycopy(this.children, 0, children, 0, i);
+            System.arraycopy(this.chars, i + 1, chars, i, chars.length - i);
+            System.arraycopy(this.children, i + 1, children, i, children.length - i);
+            this.chars = chars;
+            this.children = children;
+        }
+
+        private boolean isEmpty() {
+            return this.names.isEmpty() && this.chars.length == 0;
+        }
+
+    }
+
+    public synchronized void add(String name) {
+        if (!this.names.add(name)) {
+            return;
+        }
+        String key = name.toLowerCase(Locale.ROOT);
+        for (int start = 0; start >= 0; start = PrefixIndex.nextStart(key, start)) {
+            Node node = this.root;
+            for (int i = start; i < key.length(); i++) {
+                node = node.getOrAddChild(key.charAt(i));
+            }
+            node.names.add(name);
+        }
+    }
+
+    public synchronized void remove(String name) {
+        if (!this.names.remove(name)) {
+            return;
+        }
+        String key = name.toLowerCase(Locale.ROOT);
+        for (int start = 0; start >= 0; start = PrefixIndex.nextStart(key, start)) {
+            Node[] path = new Node[key.length() - start + 1];
+            path[0] = this.root;
+            for (int i = start; i < key.length(); i++) {
+                path[i - start + 1] = path[i - start].child(key.charAt(i));
+            }
+            path[path.length - 1].names.remove(name);
+            // prune nodes nothing is indexed under any more
+            for (int i = path.length - 1; i > 0 && path[i].isEmpty(); i--) {
+                path[i - 1].removeChild(key.charAt(start + i - 1));
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        this.names.clear();
+        this.root.names.clear();
+        this.root.chars = new char[0];
+        this.root.children = new Node[0];
+    }
+
+    /**
+     * Suggests names matching the remaining input of a builder, visiting only names under the matching prefix.
+     */
+    public CompletableFuture<Suggestions> suggest(SuggestionsBuilder builder) {
+        String remaining = builder.getRemainingLowerCase();
+        Set<String> found = new HashSet<>();
+        synchronized (this) {
+            Node node = this.root;
+            for (int i = 0; i < remaining.length() && node != null; i++) {
+                node = node.child(remaining.charAt(i));
+            }
+            if (node != null) {
+                PrefixIndex.collect(node, found);
+            }
+        }
+        for (String name : found) {
+            builder.suggest(name);
+        }
+        return builder.buildFuture();
+    }
+
+    /**
+     * Collects up to {@link PrefixIndex#LIMIT} distinct names at or below a node, depth first.
+     */
+    private static void collect(Node node, Set<String> found) {
+        for (String name : node.names) {
+            if (found.size() >= LIMIT) {
+                return;
+            }
+            found.add(name);
+        }
+        for (Node child : node.children) {
+            if (found.size() >= LIMIT) {
+                return;
+            }
+            PrefixIndex.collect(child, found);
+        }
+    }
+
+    /**
+     * @return start of the next part of a name that can be matched, or -1 if there are no more
+     */
+    private static int nextStart(String key, int start) {
+        int underscore = key.indexOf('_', start);
+        return underscore >= 0 ? underscore + 1 : -1;
+    }
+
+}
@@ -18,6 +18,11 @@ import java.nio.file.Path;
  */
 public class ServerUtil {
 
+    private static int commandTreeVersion = 0;
+    // lowest permission level whose visible command tree changed since the last resend
+    private static int changedPermissionLevel = Integer.MAX_VALUE;
+    private static boolean resendScheduled = false;
+
     /**
      * @param path a relative path to a file
      * @return path to a file on within the current world folder
@@ -63,20 +68,74 @@ public class ServerUtil {
      * @param name target command
      */
     public static void removeCommandByName(MinecraftServer server, String name) {
+        removeCommandByName(server, name, 0);
+    }
+
+    /**
+     * Removes a command from a server given by the specified string
+     * @param server target server
+     * @param name target command
+     * @param permissionLevel permission level required to see the command, players below it aren't resent the tree
+     */
+    public static void removeCommandByName(MinecraftServer server, String name, int permissionLevel) {
         RootCommandNode<ServerCommandSource> r = server.getCommandManager().getDispatcher().getRoot();
         ((CommandNodeModifier) r).technicalToolbox$RemoveStringInstance(name);
+        markCommandTreeChanged(permissionLevel);
         refreshCommandTree(server);
     }
 
     /**
-     * Refreshes the server command tree.
+     * Marks the dispatcher tree as changed, invalidating anything derived from it such as cached parse results.
+     */
+    public static void markCommandTreeChanged() {
+        markCommandTreeChanged(0);
+    }
+
+    /**
+     * Marks the dispatcher tree as changed for players with at least the given permission level.
+     * @param permissionLevel permission level required to see the changed command
+     */
+    public static void markCommandTreeChanged(int permissionLevel) {
+        commandTreeVersion++;
+        changedPermissionLevel = Math.min(changedPermissionLevel, permissionLevel);
+    }
+
+    /**
+     * @return a counter that changes whenever commands are added to or removed from the dispatcher tree
+     */
+    public static int getCommandTreeVersion() {
+        return commandTreeVersion;
+    }
+
+    /**
+     * Forgets pending command tree resends, which are dropped along with the rest of the server's queued tasks when it
+     * stops and would otherwise suppress refreshes on the next server, i.e. the next singleplayer world.
+     */
+    public static void onServerClose() {
+        resendScheduled = false;
+        changedPermissionLevel = Integer.MAX_VALUE;
+    }
+
+    /**
+     * Refreshes the server command tree. Refreshes are coalesced, so any number of calls before the scheduled task runs
+     * result in a single resend, which only goes to players who can see a changed command.
      * @param server target server
      */
     public static void refreshCommandTree(MinecraftServer server) {
+        if (resendScheduled) {
+            return;
+        }
+        resendScheduled = true;
         server.send(new ServerTask(server.getTicks(), () -> {
+            resendScheduled = false;
+            // explicit refreshes without a recorded change go to everyone
+            int level = changedPermissionLevel == Integer.MAX_VALUE ? 0 : changedPermissionLevel;
+            changedPermissionLevel = Integer.MAX_VALUE;
             try {
                 for (ServerPlayerEntity player : server.getPlayerManager().getPlayerList()) {
-                    server.getCommandManager().sendCommandTree(player);
+                    if (player.hasPermissionLevel(level)) {
+                        server.getCommandManager().sendCommandTree(player);
+                    }
                 }
             }
             catch (NullPointerException e) {
@@ -0,0 +1,147 @@
+package com.birblett.impl.command.alias;
+
+import com.birblett.impl.command.alias.language.Frame;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AliasCacheTest {
+
+    /**
+     * Uses every kind of statement, and every kind of expression the compiler can leave in a program.
+     */
+    private static final String EVERYTHING = """
+            Arguments: {$n:int} {$x:double} {$f:float} {$op:selection|add,sub,pow}
+            Command list:
+            [let s = ""]
+            [let t = "t"]
+            [list int xs]
+            [map string names]
+            [for i = 1 to n step 1]
+                [append xs i * i]
+                [let names[i] = "n" + i]
+                [let s = s + i]
+                [let t = t + s + i]
+            [end]
+            [let total = 0.0]
+            [let i = 0]
+            [while i < len(xs) and not (i > 100 or x < 0)]
+                [let total = total + xs[i] / x - f]
+                [let i = i + 1]
+            [end]
+            [if op = "add"]
+                [let total = total + 1]
+            [elif op == "sub"]
+                [let total = total - 1]
+            [else]
+                [let total = total ^ 2]
+            [end]
+            [yield]
+            [sleep n % 3]
+            [let m = n]
+            [let m = m * 2 + 1]
+            [return s + " " + t + " " + total + " " + names[2] + " " + len(names) + " " + m]
+            """;
+
+    private static byte[] write(AliasedCommand alias) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            alias.writeCompiled(out);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static List<String> program(AliasedCommand alias) {
+        return alias.getProgram().stream().map(Object::toString).toList();
+    }
+
+    /**
+     * Writes a compiled alias and reads it back, checking that what was read is the same program.
+     */
+    private static AliasedCommand roundTrip(AliasedCommand alias) throws IOException {
+        byte[] written = AliasCacheTest.write(alias);
+        ByteBuffer in = ByteBuffer.wrap(written);
+        AliasedCommand read = AliasedCommand.readCompiled(in, false);
+        assertNotNull(read);
+        assertFalse(in.hasRemaining(), "unread bytes");
+        assertEquals(alias.getAlias(), read.getAlias());
+        assertEquals(alias.getCommands(), read.getCommands());
+        assertEquals(AliasCacheTest.program(alias), AliasCacheTest.program(read));
+        assertEquals(alias.createFrame(null).size(), read.createFrame(null).size());
+        // writing it again gives the same bytes, so the source line of every instruction survived as well
+        assertArrayEquals(written, AliasCacheTest.write(read));
+        return read;
+    }
+
+    /**
+     * Runs an alias to the end, resuming it right away whenever it suspends.
+     */
+    private static Object run(AliasedCommand alias, Object... arguments) {
+        Frame frame = Scripts.frame(alias, arguments);
+        int address = 0;
+        while ((address = Scripts.run(alias, frame, address)) >= 0) {
+            assertTrue(address < alias.getProgram().size(), "ran past the [return]");
+        }
+        assertEquals(-2, address);
+        return frame.getReturnValue().getValue();
+    }
+
+    @Test
+    void readsBackExamples() throws IOException {
+        int count = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(Path.of("examples", "alias"), "*.alias")) {
+            for (Path file : files) {
+                AliasedCommand alias = AliasedCommand.parseFile(file, false);
+                assertNotNull(alias, file.toString());
+                assertTrue(alias.prepare(false), file + ": " + alias.status);
+                AliasCacheTest.roundTrip(alias);
+                count++;
+            }
+        }
+        assertTrue(count > 0, "no examples found");
+    }
+
+    @Test
+    void readsBackEveryInstructionAndExpression() throws IOException {
+        AliasCacheTest.roundTrip(Scripts.compile(AliasCacheTest.EVERYTHING));
+        AliasCacheTest.roundTrip(Scripts.compile("""
+                Arguments: {$target:word}
+                Command list:
+                say hello {$target}
+                [call int a = test(1)]
+                [call test()]
+                [fetch long b]
+                [return a + b]
+                """));
+    }
+
+    @Test
+    void readProgramsComputeTheSame() throws IOException {
+        AliasedCommand alias = Scripts.compile(AliasCacheTest.EVERYTHING), read = AliasCacheTest.roundTrip(alias);
+        for (Object[] arguments : new Object[][]{{4, 2.0, 0.5f, "add"}, {0, 1.0, 0f, "sub"}, {3, -1.0, 1f, "pow"}}) {
+            assertEquals(AliasCacheTest.run(alias, arguments), AliasCacheTest.run(read, arguments));
+        }
+    }
+
+    @Test
+    void rejectsLinesOutOfRange() throws IOException {
+        byte[] written = AliasCacheTest.write(Scripts.compile("""
+                Command list:
+                [let a = 1]
+                [return a]
+                """));
+        // the line of the last instruction is the last int written
+        written[written.length - 1] = 2;
+        assertThrows(IllegalStateException.class, () -> AliasedCommand.readCompiled(ByteBuffer.wrap(written), false));
+    }
+
+}
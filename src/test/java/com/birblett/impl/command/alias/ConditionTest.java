@@ -0,0 +1,127 @@
+package com.birblett.impl.command.alias;
+
+import com.birblett.impl.command.alias.language.Frame;
+import org.junit.jupiter.api.Test;
+
+import java.util.function.BiPredicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConditionTest {
+
+    private static final long[] VALUES = {-1, 0, 1, 2};
+
+    /**
+     * Checks which branch of [if condition] runs for every pair of values of arguments a and b.
+     */
+    private static void assertBranches(String condition, BiPredicate<Long, Long> expected) {
+        AliasedCommand alias = Scripts.compile("""
+                Arguments: {$a:int} {$b:int}
+                Command list:
+                [if %s]
+                    [return "then"]
+                [end]
+                [return "else"]
+                """.formatted(condition));
+        for (long a : VALUES) {
+            for (long b : VALUES) {
+                Frame frame = Scripts.frame(alias, a, b);
+                Scripts.run(alias, frame, 0);
+                assertEquals(expected.test(a, b) ? "then" : "else", frame.getReturnValue().getValue(), condition +
+                        " with a = " + a + ", b = " + b);
+            }
+        }
+    }
+
+    @Test
+    void shortCircuitsAnd() {
+        ConditionTest.assertBranches("a > 0 and b > 0", (a, b) -> a > 0 && b > 0);
+        ConditionTest.assertBranches("a > 0 and b > 0 and a < b", (a, b) -> a > 0 && b > 0 && a < b);
+    }
+
+    @Test
+    void shortCircuitsOr() {
+        ConditionTest.assertBranches("a > 0 or b > 0", (a, b) -> a > 0 || b > 0);
+        ConditionTest.assertBranches("a = 2 or b = 2 or a = b", (a, b) -> a == 2 || b == 2 || a.equals(b));
+    }
+
+    @Test
+    void bindsAndTighterThanOr() {
+        ConditionTest.assertBranches("a > 0 or b > 0 and a < 0", (a, b) -> a > 0 || b > 0 && a < 0);
+        ConditionTest.assertBranches("a > 0 and b > 0 or a < 0 and b < 0", (a, b) -> a > 0 && b > 0 || a < 0 && b < 0);
+    }
+
+    @Test
+    void negatesConditions() {
+        ConditionTest.assertBranches("not a > 0", (a, b) -> a <= 0);
+        ConditionTest.assertBranches("not (a > 0 and b > 0)", (a, b) -> !(a > 0 && b > 0));
+        ConditionTest.assertBranches("not (a > 0 or b > 0)", (a, b) -> !(a > 0 || b > 0));
+        ConditionTest.assertBranches("not not (a > 0 or b > 0)", (a, b) -> a > 0 || b > 0);
+    }
+
+    @Test
+    void groupsNestedParentheses() {
+        ConditionTest.assertBranches("(a > 0 or b > 0) and not (a > 1 or b > 1)", (a, b) -> (a > 0 || b > 0) && !(a > 1
+                || b > 1));
+        ConditionTest.assertBranches("((a = b) or (a > 0 and not (b >= 0 or a = 2)))", (a, b) -> a.equals(b) || a > 0 &&
+                !(b >= 0 || a == 2));
+        ConditionTest.assertBranches("(a + 1) * 2 > b and (b < 0 or (a < 2))", (a, b) -> (a + 1) * 2 > b && (b < 0 ||
+                a < 2));
+    }
+
+    @Test
+    void fallsThroughToElifAfterCompoundIf() {
+        AliasedCommand alias = Scripts.compile("""
+                Arguments: {$a:int} {$b:int}
+                Command list:
+                [let r = "none"]
+                [if a > 0 and b > 0]
+                    [let r = "both"]
+                [elif a > 0 or b > 0]
+                    [let r = "one"]
+                [elif not (a < 0 or b < 0)]
+                    [let r = "zero"]
+                [end]
+                [return r]
+                """);
+        for (long a : VALUES) {
+            for (long b : VALUES) {
+                Frame frame = Scripts.frame(alias, a, b);
+                Scripts.run(alias, frame, 0);
+                String expected = a > 0 && b > 0 ? "both" : a > 0 || b > 0 ? "one" : !(a < 0 || b < 0) ? "zero" : "none";
+                assertEquals(expected, frame.getReturnValue().getValue(), "a = " + a + ", b = " + b);
+            }
+        }
+    }
+
+    @Test
+    void loopsWhileCompoundConditionsHold() {
+        String script = """
+                Arguments: {$a:int} {$b:int}
+                Command list:
+                [let n = 0]
+                [while n < a and (n < b or not n >= 2)]
+                    [let n = n + 1]
+                [end]
+                [return n]
+                """;
+        for (long a = 0; a < 5; a++) {
+            for (long b = 0; b < 5; b++) {
+                assertEquals(Math.min(a, Math.max(b, 2)), Scripts.run(script, a, b), "a = " + a + ", b = " + b);
+            }
+        }
+    }
+
+    @Test
+    void rejectsIncompleteConditions() {
+        for (String condition : new String[]{"a > 0 and", "or a > 0", "not", "a > 0 and (b > 0", "a > 0 and b"}) {
+            Scripts.compileError("""
+                    Arguments: {$a:int} {$b:int}
+                    Command list:
+                    [if %s]
+                    [end]
+                    """.formatted(condition));
+        }
+    }
+
+}
@@ -0,0 +1,121 @@
+package com.birblett.impl.command.alias;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ForTest {
+
+    private static final String COUNT = """
+            Arguments: {$lo:long} {$hi:long}
+            Command list:
+            [let n = 0]
+            [let sum = 0]
+            [for i = lo to hi]
+                [let n = n + 1]
+                [let sum = sum + i]
+            [end]
+            [return n + " " + sum]
+            """;
+    private static final String COUNT_BY = """
+            Arguments: {$lo:long} {$hi:long} {$step:long}
+            Command list:
+            [let n = 0]
+            [let sum = 0]
+            [for i = lo to hi step step]
+                [let n = n + 1]
+                [let sum = sum + i]
+            [end]
+            [return n + " " + sum]
+            """;
+
+    /**
+     * @return number of iterations and sum of i, separated by a space
+     */
+    private static String count(long lo, long hi) {
+        return (String) Scripts.run(ForTest.COUNT, lo, hi);
+    }
+
+    private static String count(long lo, long hi, long step) {
+        return (String) Scripts.run(ForTest.COUNT_BY, lo, hi, step);
+    }
+
+    @Test
+    void countsUpToAnInclusiveBound() {
+        assertEquals("10 55", ForTest.count(1, 10));
+        assertEquals("4 " + (1 + 4 + 7 + 10), ForTest.count(1, 10, 3));
+        assertEquals("1 5", ForTest.count(5, 5));
+    }
+
+    @Test
+    void countsDownWithNegativeSteps() {
+        assertEquals("3 6", ForTest.count(3, 1, -1));
+        assertEquals("2 15", ForTest.count(10, 1, -5));
+    }
+
+    @Test
+    void skipsLoopsThatStartPastTheBound() {
+        assertEquals("0 0", ForTest.count(2, 1));
+        assertEquals("0 0", ForTest.count(1, 2, -1));
+    }
+
+    @Test
+    void stopsInsteadOfOverflowing() {
+        long max = Long.MAX_VALUE, min = Long.MIN_VALUE;
+        assertEquals("3 " + (3 * max - 3), ForTest.count(max - 2, max));
+        assertEquals("2 " + (2 * max - 4), ForTest.count(max - 3, max, 2));
+        assertEquals("1 " + (max - 1), ForTest.count(max - 1, max, max));
+        assertEquals("4 " + (4 * min + 6), ForTest.count(min + 3, min, -1));
+    }
+
+    @Test
+    void evaluatesTheBoundAndStepOnce() {
+        assertEquals(6L, Scripts.run("""
+                Arguments: {$limit:int}
+                Command list:
+                [for i = 1 to limit]
+                    [let limit = limit + 1]
+                [end]
+                [return limit]
+                """, 3));
+    }
+
+    @Test
+    void scopesTheCounterToTheLoop() {
+        assertEquals(6L, Scripts.run("""
+                Command list:
+                [let n = 0]
+                [for i = 1 to 3]
+                    [let n = i]
+                [end]
+                [for i = 2 to 0 step 0 - 1]
+                    [let n = n + i]
+                [end]
+                [return n]
+                """));
+    }
+
+    @Test
+    void rejectsInvalidLoops() {
+        for (String loop : new String[]{"i = 1 to 10 step 0", "i = 1 to 10 step 2 * 0", "i = 1.5 to 10",
+                "i = 1 to \"10\"", "i = 1 to 10 step 0.5", "i = 1 until 10", "1 = 1 to 10"}) {
+            Scripts.compileError("""
+                    Command list:
+                    [for %s]
+                    [end]
+                    """.formatted(loop));
+        }
+        assertTrue(Scripts.compileError("""
+                Command list:
+                [for i = 1 to 10 step 1 - 1]
+                [end]
+                """).endsWith("for loop step can't be 0"));
+        Scripts.compileError("""
+                Command list:
+                [list int xs]
+                [for xs = 1 to 10]
+                [end]
+                """);
+    }
+
+}
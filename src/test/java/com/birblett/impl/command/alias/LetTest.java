@@ -0,0 +1,85 @@
+package com.birblett.impl.command.alias;
+
+import com.birblett.impl.command.alias.language.Frame;
+import com.birblett.impl.command.alias.language.Instruction;
+import com.birblett.impl.command.alias.language.Optimizer;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LetTest {
+
+    /**
+     * [let s = init] followed by [for i = 1 to 3] around [let s = update], returning s.
+     */
+    private static AliasedCommand loop(String init, String update) {
+        return Scripts.compile("""
+                Command list:
+                [let s = %s]
+                [for i = 1 to 3]
+                    [let s = %s]
+                [end]
+                [return s]
+                """.formatted(init, update));
+    }
+
+    private static boolean appends(List<Instruction> program) {
+        return program.stream().anyMatch(instruction -> instruction.toString().startsWith("let s += "));
+    }
+
+    private static Object run(AliasedCommand alias) {
+        Frame frame = Scripts.frame(alias);
+        assertEquals(-2, Scripts.run(alias, frame, 0));
+        return frame.getReturnValue().getValue();
+    }
+
+    @Test
+    void appendsToStringsConcatenatedOntoThemselves() {
+        AliasedCommand alias = LetTest.loop("\"\"", "s + i + \",\"");
+        assertTrue(LetTest.appends(alias.getProgram()), alias.getProgram().toString());
+        assertEquals("1,2,3,", LetTest.run(alias));
+        // optimizing again keeps the append
+        List<Instruction> program = alias.getProgram();
+        assertTrue(LetTest.appends(Optimizer.optimize(program)));
+    }
+
+    @Test
+    void evaluatesTheAppendedPartBeforeAppending() {
+        AliasedCommand alias = LetTest.loop("\"ab\"", "s + s");
+        assertTrue(LetTest.appends(alias.getProgram()), alias.getProgram().toString());
+        assertEquals("ab".repeat(8), LetTest.run(alias));
+    }
+
+    @Test
+    void readsAppendedVariablesAsStrings() {
+        assertEquals("x123 x123", Scripts.run("""
+                Command list:
+                [let s = "x"]
+                [for i = 1 to 3]
+                    [let s = s + i]
+                [end]
+                [let t = s]
+                [return t + " " + s]
+                """));
+    }
+
+    @Test
+    void onlyAppendsToVariablesThatAlwaysHoldStrings() {
+        AliasedCommand alias = LetTest.loop("1", "s + \"x\"");
+        assertFalse(LetTest.appends(alias.getProgram()), alias.getProgram().toString());
+        assertEquals("1xxx", LetTest.run(alias));
+    }
+
+    @Test
+    void onlyAppendsWhenTheVariableComesFirst() {
+        AliasedCommand alias = LetTest.loop("\"\"", "i + s");
+        assertFalse(LetTest.appends(alias.getProgram()), alias.getProgram().toString());
+        assertEquals("321", LetTest.run(alias));
+        alias = LetTest.loop("\"a\"", "\"-\" + s + i");
+        assertFalse(LetTest.appends(alias.getProgram()), alias.getProgram().toString());
+        assertEquals("---a123", LetTest.run(alias));
+    }
+
+}
@@ -0,0 +1,113 @@
+package com.birblett.impl.command.alias;
+
+import com.birblett.impl.command.alias.language.Frame;
+import com.birblett.impl.command.alias.language.Instruction;
+import com.birblett.impl.command.alias.language.Operator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Reads and compiles alias scripts the way alias files are, then runs them outside the game. Scripts run without a
+ * context, so they can't contain anything that needs one, such as commands or calls; what they compute is read back
+ * through [return].
+ */
+final class Scripts {
+
+    // stops scripts that never finish instead of hanging the test
+    private static final int LIMIT = 100000;
+
+    private Scripts() {}
+
+    /**
+     * Reads an alias file without compiling or registering it.
+     * @param script alias file contents after the "Alias:" line, i.e. its arguments and command list
+     */
+    static AliasedCommand read(String script) {
+        try {
+            Path path = Files.createTempFile("test", ".alias");
+            try {
+                Files.writeString(path, "Alias: test\n" + script);
+                AliasedCommand alias = AliasedCommand.parseFile(path, false);
+                assertNotNull(alias);
+                return alias;
+            }
+            finally {
+                Files.delete(path);
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static AliasedCommand compile(String script) {
+        AliasedCommand alias = Scripts.read(script);
+        assertTrue(alias.prepare(false), alias.status);
+        return alias;
+    }
+
+    /**
+     * @return the compiler error
+     */
+    static String compileError(String script) {
+        AliasedCommand alias = Scripts.read(script);
+        assertFalse(alias.prepare(false), script);
+        return alias.status;
+    }
+
+    /**
+     * @param arguments argument values in declaration order, as the dispatcher would pass them
+     */
+    static Frame frame(AliasedCommand alias, Object... arguments) {
+        Frame frame = alias.createFrame(null);
+        for (int slot = 0; slot < arguments.length; slot++) {
+            frame.set(slot, arguments[slot]);
+        }
+        return frame;
+    }
+
+    /**
+     * Runs from an address until the script ends, returns, fails a line or suspends.
+     * @return address after the end of the script or after the suspending instruction, or the -2 or -5 it stopped
+     * with
+     */
+    static int run(AliasedCommand alias, Frame frame, int address) {
+        List<Instruction> program = alias.getProgram();
+        for (int steps = 0; address < program.size(); steps++) {
+            if (steps == LIMIT) {
+                throw new AssertionError("script didn't finish within " + LIMIT + " instructions: " + program);
+            }
+            int out = program.get(address).execute(alias, null, frame);
+            if (out == -2 || out == -5) {
+                return out;
+            }
+            if (out == -4) {
+                throw new AssertionError("calls can't be run outside the game");
+            }
+            address = out >= 0 ? out : address + 1;
+            if (out == -3) {
+                return address;
+            }
+        }
+        return address;
+    }
+
+    /**
+     * Compiles and runs a script from start to finish.
+     * @return what it returned, as a long, double or string, or null if it returned nothing
+     */
+    static Object run(String script, Object... arguments) {
+        AliasedCommand alias = Scripts.compile(script);
+        Frame frame = Scripts.frame(alias, arguments);
+        assertNotEquals(-5, Scripts.run(alias, frame, 0));
+        Operator value = frame.getReturnValue();
+        return value != null ? value.getValue() : null;
+    }
+
+}
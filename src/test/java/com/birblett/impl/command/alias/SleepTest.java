@@ -0,0 +1,77 @@
+package com.birblett.impl.command.alias;
+
+import com.birblett.impl.command.alias.language.Frame;
+import com.birblett.impl.command.alias.language.Instruction;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SleepTest {
+
+    /**
+     * Runs a script to the end, resuming it right away each time it suspends.
+     * @return ticks each suspension asked to wait for, in order
+     */
+    private static List<Long> suspensions(String script, Object... arguments) {
+        AliasedCommand alias = Scripts.compile(script);
+        List<Instruction> program = alias.getProgram();
+        Frame frame = Scripts.frame(alias, arguments);
+        List<Long> ticks = new ArrayList<>();
+        int address = 0;
+        while ((address = Scripts.run(alias, frame, address)) < program.size()) {
+            ticks.add(((Instruction.Sleep) program.get(address - 1)).getTicks(frame));
+        }
+        return ticks;
+    }
+
+    @Test
+    void sleepsAtLeastOneTick() {
+        assertEquals(List.of(1L, 1L, 1L, 1L, 6L), SleepTest.suspensions("""
+                Arguments: {$n:int}
+                Command list:
+                [yield]
+                [sleep]
+                [sleep 0]
+                [sleep n - 10]
+                [sleep n * 2]
+                [let n = 0]
+                """, 3));
+    }
+
+    @Test
+    void resumesWhereItLeftOff() {
+        assertEquals(List.of(2L, 4L, 6L), SleepTest.suspensions("""
+                Arguments: {$n:int}
+                Command list:
+                [let i = 0]
+                [while i < n]
+                    [let i = i + 1]
+                    [sleep i * 2]
+                [end]
+                """, 3));
+        assertEquals(List.of(), SleepTest.suspensions("""
+                Arguments: {$n:int}
+                Command list:
+                [if n > 0]
+                    [yield]
+                [end]
+                """, 0));
+    }
+
+    @Test
+    void rejectsInvalidDurations() {
+        Scripts.compileError("""
+                Arguments: {$s:string}
+                Command list:
+                [sleep s]
+                """);
+        Scripts.compileError("""
+                Command list:
+                [yield 2]
+                """);
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.birblett.impl.command.alias.language;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AliasListTest {
+
+    @Test
+    void appendsAndReadsElements() {
+        List<LinkedHashMap<String, Variable.Definition>> vars = Programs.scope();
+        List<Instruction> code = new ArrayList<>();
+        code.add(new Instruction.Declare("list", "int", "xs", vars));
+        code.add(new Instruction.Store("xs", null, "3", vars));
+        code.add(new Instruction.Store("xs", null, "4.9", vars));
+        code.add(new Instruction.Store("xs", "0", "xs[0] + 10", vars));
+        code.add(new Instruction.Let("n", "len(xs)", vars));
+        code.add(new Instruction.Let("sum", "xs[0] + xs[1]", vars));
+        code.add(new Instruction.Let("past", "xs[5]", vars));
+        Frame frame = Programs.frame(vars);
+        Programs.run(Optimizer.optimize(code), frame);
+        AliasList list = (AliasList) frame.getObject(Programs.slot(vars, "xs"));
+        assertEquals(Frame.LONG, list.kind());
+        assertEquals("[13, 4]", list.toString());
+        assertEquals(2, frame.getLong(Programs.slot(vars, "n")));
+        assertEquals(17, frame.getLong(Programs.slot(vars, "sum")));
+        // out of bounds reads as an unset value
+        assertEquals(0, frame.getLong(Programs.slot(vars, "past")));
+    }
+
+    @Test
+    void convertsElementsToTheirType() {
+        AliasList floats = new AliasList(2), strings = new AliasList(4);
+        Frame frame = new Frame(0);
+        floats.append(new Expression.DoubleConstant(0.1), frame);
+        strings.append(new Expression.LongConstant(7), frame);
+        assertEquals(Frame.DOUBLE, floats.kind());
+        assertEquals("0.1", floats.getString(0));
+        assertEquals(0.1f, floats.getDouble(0));
+        assertEquals("7", strings.getString(0));
+        assertEquals("", strings.getString(1));
+        assertEquals("0.0", floats.getString(-1));
+        assertFalse(strings.inBounds(1));
+    }
+
+    @Test
+    void redeclaringEmptiesTheList() {
+        List<LinkedHashMap<String, Variable.Definition>> vars = Programs.scope();
+        List<Instruction> code = new ArrayList<>();
+        code.add(new Instruction.Declare("list", "string", "xs", vars));
+        code.add(new Instruction.Store("xs", null, "\"a\"", vars));
+        code.add(new Instruction.Declare("list", "string", "xs", vars));
+        Frame frame = Programs.frame(vars);
+        Programs.run(code, frame);
+        assertEquals(0, ((AliasList) frame.getObject(Programs.slot(vars, "xs"))).size());
+    }
+
+    @Test
+    void rejectsInvalidDeclarationsAndStores() {
+        List<LinkedHashMap<String, Variable.Definition>> vars = Programs.scope("int n");
+        assertFalse(new Instruction.Declare("list", "bogus", "xs", vars).valid);
+        assertFalse(new Instruction.Declare("list", "int", "n", vars).valid);
+        assertFalse(new Instruction.Store("n", null, "1", vars).valid);
+        assertTrue(new Instruction.Declare("map", "int", "m", vars).valid);
+        assertFalse(new Instruction.Store("m", null, "1", vars).valid);
+        assertFalse(new Instruction.Let("m", "1", vars).valid);
+    }
+
+}
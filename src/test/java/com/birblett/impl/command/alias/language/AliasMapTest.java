@@ -0,0 +1,47 @@
+package com.birblett.impl.command.alias.language;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AliasMapTest {
+
+    @Test
+    void storesAndReadsEntries() {
+        List<LinkedHashMap<String, Variable.Definition>> vars = Programs.scope("string key");
+        List<Instruction> code = new ArrayList<>();
+        code.add(new Instruction.Declare("map", "double", "m", vars));
+        code.add(new Instruction.Store("m", "key", "1.5", vars));
+        code.add(new Instruction.Store("m", "\"b\"", "2", vars));
+        code.add(new Instruction.Store("m", "key", "m[key] * 2", vars));
+        code.add(new Instruction.Let("n", "len(m)", vars));
+        code.add(new Instruction.Let("sum", "m[key] + m[\"b\"]", vars));
+        code.add(new Instruction.Let("missing", "m[\"c\"]", vars));
+        Frame frame = Programs.frame(vars);
+        frame.setObject(Programs.slot(vars, "key"), "a");
+        Programs.run(Optimizer.optimize(code), frame);
+        AliasMap map = (AliasMap) frame.getObject(Programs.slot(vars, "m"));
+        assertEquals(Frame.DOUBLE, map.kind());
+        assertEquals(2, frame.getLong(Programs.slot(vars, "n")));
+        assertEquals(5.0, frame.getDouble(Programs.slot(vars, "sum")));
+        assertEquals(0.0, frame.getDouble(Programs.slot(vars, "missing")));
+    }
+
+    @Test
+    void convertsValuesToTheirType() {
+        AliasMap ints = new AliasMap(0), strings = new AliasMap(4);
+        Frame frame = new Frame(0);
+        ints.put("a", new Expression.DoubleConstant(2.9), frame);
+        strings.put("a", new Expression.LongConstant(3), frame);
+        assertEquals(2, ints.getLong("a"));
+        assertEquals("2", ints.getString("a"));
+        assertEquals("3", strings.getString("a"));
+        assertEquals("", strings.getString("b"));
+        assertEquals(0, strings.getLong("a"));
+    }
+
+}
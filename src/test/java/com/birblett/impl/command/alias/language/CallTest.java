@@ -0,0 +1,103 @@
+package com.birblett.impl.command.alias.language;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CallTest {
+
+    @Test
+    void asksTheInterpreterToEnterTheCall() {
+        List<LinkedHashMap<String, Variable.Definition>> vars = Programs.scope("int n");
+        Instruction.Call call = new Instruction.Call("other", "n, n + 1", null, vars);
+        assertTrue(call.valid);
+        assertEquals("other", call.getTargetName());
+        assertEquals(-4, call.execute(null, null, Programs.frame(vars)));
+    }
+
+    @Test
+    void rejectsInvalidAssignments() {
+        Instruction.Call call = new Instruction.Call("other", "", "bogus r", Programs.scope());
+        assertFalse(call.valid);
+        assertTrue(call.err.contains("not a valid type"), call.err);
+        call = new Instruction.Call("other", "", "int", Programs.scope());
+        assertFalse(call.valid);
+        call = new Instruction.Call("other", "", "int 1r", Programs.scope());
+        assertFalse(call.valid);
+    }
+
+    @Test
+    void rejectsInvalidArguments() {
+        assertFalse(new Instruction.Call("other", "1 +", null, Programs.scope()).valid);
+        assertFalse(new Instruction.Call("other", "missing", null, Programs.scope()).valid);
+    }
+
+    @Test
+    void assignsReturnValuesCastToTheirType() {
+        List<LinkedHashMap<String, Variable.Definition>> vars = Programs.scope();
+        Instruction.Fetch toInt = new Instruction.Fetch("int", "r", vars);
+        Instruction.Fetch toString = new Instruction.Fetch("string", "s", vars);
+        Frame frame = Programs.frame(vars);
+        toInt.assign(frame, new Operator.NumberOperator(2.7));
+        assertEquals(Frame.LONG, frame.kind(Programs.slot(vars, "r")));
+        assertEquals(2, frame.getLong(Programs.slot(vars, "r")));
+        toString.assign(frame, new Operator.NumberOperator(2.5));
+        assertEquals("2.5", frame.getString(Programs.slot(vars, "s")));
+        // nothing returned reads as 0
+        toInt.assign(frame, null);
+        assertEquals(0, frame.getLong(Programs.slot(vars, "r")));
+    }
+
+    @Test
+    void describesArgumentsAndAssignment() {
+        List<LinkedHashMap<String, Variable.Definition>> vars = Programs.scope("int n");
+        assertEquals("call other(n, (n + 1))", new Instruction.Call("other", "n, n + 1", null, vars).toString());
+        assertEquals("call other() -> fetch int r", new Instruction.Call("other", "", "int r", vars).toString());
+    }
+
+    @Test
+    void discardsReturnValuesThatArentAssigned() {
+        List<LinkedHashMap<String, Variable.Definition>> vars = Programs.scope("int n");
+        Instruction.Call call = new Instruction.Call("other", "n", null, vars);
+        Frame frame = Programs.frame(vars);
+        frame.setLong(Programs.slot(vars, "n"), 3);
+        call.leave(frame, new Operator.NumberOperator(7));
+        assertEquals(3, frame.getLong(Programs.slot(vars, "n")));
+        assertNull(call.getAssign());
+    }
+
+    @Test
+    void composesTailCallReturnModes() {
+        assertEquals(0, Instruction.Call.composeReturnModes(Instruction.Call.RETURN_AS_IS, 0));
+        assertEquals(Instruction.Call.RETURN_NULL, Instruction.Call.composeReturnModes(Instruction.Call.RETURN_AS_IS,
+                Instruction.Call.RETURN_NULL));
+        assertEquals(3, Instruction.Call.composeReturnModes(3, 3));
+        // whatever the tail call returns, the original returns nothing or null
+        assertEquals(Instruction.Call.RETURN_NOTHING, Instruction.Call.composeReturnModes(Instruction.Call
+                .RETURN_NOTHING, 4));
+        assertEquals(Instruction.Call.RETURN_NULL, Instruction.Call.composeReturnModes(Instruction.Call.RETURN_NULL,
+                Instruction.Call.RETURN_NOTHING));
+        // an int cast of a double cast isn't either cast on its own
+        assertEquals(Instruction.Call.RETURN_INVALID, Instruction.Call.composeReturnModes(0, 3));
+        assertEquals(Instruction.Call.RETURN_INVALID, Instruction.Call.composeReturnModes(0, Instruction.Call
+                .RETURN_NULL));
+    }
+
+    @Test
+    void castsReturnValuesLikeAssigningThem() {
+        List<LinkedHashMap<String, Variable.Definition>> vars = Programs.scope();
+        Instruction.Call call = new Instruction.Call("other", "", "int r", vars);
+        Frame frame = Programs.frame(vars);
+        for (Operator value : new Operator[]{new Operator.NumberOperator(2.7), new Operator.NumberOperator(-4),
+                new Operator.StringOperator("text"), null}) {
+            call.leave(frame, value);
+            Operator cast = Instruction.Call.castReturnValue(value, 0);
+            assertEquals(frame.getLong(Programs.slot(vars, "r")), ((Number) cast.getValue()).longValue());
+            assertEquals(frame.getString(Programs.slot(vars, "r")), String.valueOf(cast.getValue()));
+        }
+    }
+
+}
@@ -0,0 +1,97 @@
+package com.birblett.impl.command.alias.language;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LexerTest {
+
+    private static List<Lexer.Kind> kinds(List<Lexer.Token> tokens) {
+        return tokens.stream().map(Lexer.Token::kind).toList();
+    }
+
+    @Test
+    void tokenizesExpressions() {
+        List<Lexer.Token> tokens = Lexer.tokenize("max(a_1, 2) >= \"x y\" + b[0]");
+        assertEquals(List.of(Lexer.Kind.IDENTIFIER, Lexer.Kind.OPEN_PAREN, Lexer.Kind.IDENTIFIER, Lexer.Kind.COMMA,
+                Lexer.Kind.NUMBER, Lexer.Kind.CLOSE_PAREN, Lexer.Kind.COMPARATOR, Lexer.Kind.STRING, Lexer.Kind.OPERATOR,
+                Lexer.Kind.IDENTIFIER, Lexer.Kind.OPEN_BRACKET, Lexer.Kind.NUMBER, Lexer.Kind.CLOSE_BRACKET),
+                LexerTest.kinds(tokens));
+        assertEquals(List.of("max", "(", "a_1", ",", "2", ")", ">=", "\"x y\"", "+", "b", "[", "0", "]"), tokens
+                .stream().map(Lexer.Token::text).toList());
+        assertEquals(15, tokens.get(7).start());
+        assertEquals(20, tokens.get(7).end());
+        assertNull(Lexer.invalid(tokens));
+    }
+
+    @Test
+    void convertsNumbersWhileScanning() {
+        List<Lexer.Token> tokens = Lexer.tokenize("12 1.5 2.5f 99999999999999999999");
+        assertTrue(tokens.get(0).number().isLong());
+        assertEquals(12, tokens.get(0).number().getLongValue());
+        assertFalse(tokens.get(1).number().isLong());
+        assertEquals(1.5, tokens.get(1).number().getDoubleValue());
+        assertTrue(tokens.get(2).isFloat());
+        assertEquals(2.5, tokens.get(2).number().getDoubleValue());
+        // too large for a long, so read as a double rather than wrapping around
+        assertFalse(tokens.get(3).number().isLong());
+        assertEquals(1e20, tokens.get(3).number().getDoubleValue());
+        assertEquals(Long.MAX_VALUE, Lexer.tokenize(Long.toString(Long.MAX_VALUE)).getFirst().number().getLongValue());
+    }
+
+    @Test
+    void keepsEscapedQuotesInStrings() {
+        List<Lexer.Token> tokens = Lexer.tokenize("\"a \\\" b\" c");
+        assertEquals(2, tokens.size());
+        assertEquals("\"a \\\" b\"", tokens.getFirst().text());
+    }
+
+    @Test
+    void endsWithAnInvalidTokenInsteadOfThrowing() {
+        Lexer.Token invalid = Lexer.invalid(Lexer.tokenize("1 + # 2"));
+        assertNotNull(invalid);
+        assertEquals(4, invalid.start());
+        invalid = Lexer.invalid(Lexer.tokenize("12ab"));
+        assertNotNull(invalid);
+        assertEquals(2, invalid.start());
+        invalid = Lexer.invalid(Lexer.tokenize("\"open"));
+        assertNotNull(invalid);
+        assertEquals("unterminated string", invalid.text());
+        // a trailing dot isn't part of the number
+        assertEquals(Lexer.Kind.INVALID, Lexer.tokenize("1.").getLast().kind());
+    }
+
+    @Test
+    void findsClosingTokensOfTheSameKind() {
+        List<Lexer.Token> tokens = Lexer.tokenize("(a[(1)] + (2)) * 3");
+        assertEquals(11, Lexer.closing(tokens, 0, tokens.size()));
+        assertEquals(6, Lexer.closing(tokens, 2, tokens.size()));
+        assertEquals(-1, Lexer.closing(tokens, 0, 5));
+    }
+
+    @Test
+    void splitsOutsideParentheses() {
+        List<Lexer.Token> tokens = Lexer.tokenize("f(a, b), c[1, 2],");
+        List<int[]> parts = Lexer.split(tokens, 0, tokens.size(), Lexer.Kind.COMMA, ",");
+        assertEquals(3, parts.size());
+        assertArrayEquals(new int[]{0, 6}, parts.get(0));
+        assertArrayEquals(new int[]{7, 13}, parts.get(1));
+        assertArrayEquals(new int[]{14, 14}, parts.get(2));
+    }
+
+    @Test
+    void findsUnmatchedParentheses() {
+        assertNull(Lexer.unmatched(Lexer.tokenize("((a)[b])")));
+        assertEquals(2, Lexer.unmatched(Lexer.tokenize("(a])")).start());
+        assertEquals(0, Lexer.unmatched(Lexer.tokenize("(a")).start());
+        assertEquals(1, Lexer.unmatched(Lexer.tokenize("a)")).start());
+    }
+
+    @Test
+    void describesPositionsFromTheFirstCharacter() {
+        assertEquals(" at column 3 of \"a + b\"", Lexer.at("  a + b ", 4));
+    }
+
+}
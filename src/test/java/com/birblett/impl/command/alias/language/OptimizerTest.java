@@ -0,0 +1,177 @@
+package com.birblett.impl.command.alias.language;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OptimizerTest {
+
+    @Test
+    void foldsConstantConditions() {
+        List<LinkedHashMap<String, Variable.Definition>> vars = Programs.scope();
+        List<Instruction> code = new ArrayList<>();
+        code.add(new Instruction.Let("x", "1", vars));
+        Instruction.If always = new Instruction.If(1, "2 > 1", vars);
+        code.addAll(always.getChain());
+        code.add(new Instruction.Let("x", "2", vars));
+        always.setJumpTo(3);
+        Instruction.If never = new Instruction.If(3, "1 + 1 == 3", vars);
+        code.addAll(never.getChain());
+        code.add(new Instruction.Let("x", "3", vars));
+        never.setJumpTo(5);
+        List<Instruction> optimized = Optimizer.optimize(code);
+        assertEquals(2, optimized.size());
+        assertTrue(optimized.stream().allMatch(instruction -> instruction instanceof Instruction.Let));
+        Frame frame = Programs.frame(vars);
+        Programs.run(optimized, frame);
+        assertEquals(2, frame.getLong(Programs.slot(vars, "x")));
+    }
+
+    @Test
+    void threadsJumpsThroughJumps() {
+        List<LinkedHashMap<String, Variable.Definition>> vars = Programs.scope("int n");
+        List<Instruction> code = new ArrayList<>();
+        Instruction.If condition = new Instruction.If(0, "n > 0", vars);
+        code.addAll(condition.getChain());
+        code.add(new Instruction.Let("m", "5", vars));
+        code.add(new Instruction.Jump(4));
+        code.add(new Instruction.Let("m", "9", vars));
+        code.add(new Instruction.Let("k", "m", vars));
+        // lands on the jump at 2, which only leads to 4
+        condition.setJumpTo(2);
+        List<Instruction> optimized = Optimizer.optimize(code);
+        assertEquals(3, optimized.size());
+        assertEquals(2, ((Instruction.Jump) optimized.getFirst()).jumpTo);
+        Frame frame = Programs.frame(vars);
+        frame.setLong(Programs.slot(vars, "n"), 0);
+        Programs.run(optimized, frame);
+        assertEquals(0, frame.getLong(Programs.slot(vars, "k")));
+        frame.setLong(Programs.slot(vars, "n"), 1);
+        Programs.run(optimized, frame);
+        assertEquals(5, frame.getLong(Programs.slot(vars, "k")));
+    }
+
+    @Test
+    void remapsJumpsAfterRemovingInstructions() {
+        List<LinkedHashMap<String, Variable.Definition>> vars = Programs.scope();
+        List<Instruction> code = new ArrayList<>();
+        code.add(new Instruction.Let("n", "0", vars));
+        Instruction.While loop = new Instruction.While(1, "n < 3", vars);
+        code.addAll(loop.getChain());
+        // falls through to the next instruction anyway
+        code.add(new Instruction.Jump(3));
+        code.add(new Instruction.Let("n", "n + 1", vars));
+        code.add(new Instruction.Jump(loop.startAddress));
+        loop.setJumpTo(5);
+        code.add(new Instruction.Let("done", "n * 2", vars));
+        List<Instruction> optimized = Optimizer.optimize(code);
+        assertEquals(5, optimized.size());
+        assertEquals(4, ((Instruction.Jump) optimized.get(1)).jumpTo);
+        assertEquals(1, ((Instruction.Jump) optimized.get(3)).jumpTo);
+        Frame frame = Programs.frame(vars);
+        assertEquals(5, Programs.run(optimized, frame));
+        assertEquals(3, frame.getLong(Programs.slot(vars, "n")));
+        assertEquals(6, frame.getLong(Programs.slot(vars, "done")));
+    }
+
+    @Test
+    void keepsSourceLinesOfRemainingInstructions() {
+        List<LinkedHashMap<String, Variable.Definition>> vars = Programs.scope();
+        List<Instruction> code = new ArrayList<>();
+        code.add(new Instruction.Let("n", "0", vars));
+        Instruction.If never = new Instruction.If(1, "1 > 2", vars);
+        code.addAll(never.getChain());
+        code.add(new Instruction.Let("n", "1", vars));
+        never.setJumpTo(3);
+        code.add(new Instruction.Let("m", "n", vars));
+        Optimizer.Program program = Optimizer.optimize(code, new int[]{0, 2, 3, 5}, null, List.of());
+        assertEquals(2, program.instructions().size());
+        assertArrayEquals(new int[]{0, 5}, program.lines());
+    }
+
+    @Test
+    void keepsJumpsPastTheEnd() {
+        List<LinkedHashMap<String, Variable.Definition>> vars = Programs.scope("int n");
+        List<Instruction> code = new ArrayList<>();
+        Instruction.If condition = new Instruction.If(0, "n > 0", vars);
+        code.addAll(condition.getChain());
+        code.add(new Instruction.Jump(4));
+        code.add(new Instruction.Jump(4));
+        code.add(new Instruction.Let("m", "1", vars));
+        condition.setJumpTo(3);
+        List<Instruction> optimized = Optimizer.optimize(code);
+        assertEquals(3, optimized.size());
+        assertEquals(3, ((Instruction.Jump) optimized.get(1)).jumpTo);
+    }
+
+    @Test
+    void leavesCompilerOutputUnchanged() {
+        List<LinkedHashMap<String, Variable.Definition>> vars = Programs.scope();
+        List<Instruction> code = new ArrayList<>();
+        Instruction.Jump first = new Instruction.Jump(1);
+        code.add(first);
+        code.add(new Instruction.Jump(3));
+        code.add(new Instruction.Let("x", "1", vars));
+        Optimizer.optimize(code);
+        assertEquals(1, first.jumpTo);
+        assertEquals(3, code.size());
+    }
+
+    @Test
+    void marksSelfCallsReturningTheAssignedVariableAsTailCalls() {
+        List<LinkedHashMap<String, Variable.Definition>> vars = Programs.scope("int n");
+        List<Instruction> code = new ArrayList<>();
+        Instruction.Call call = new Instruction.Call("count", "n - 1", "int r", vars);
+        code.add(call);
+        code.add(new Instruction.Return("r", vars));
+        Optimizer.optimize(code, "count", List.of());
+        assertTrue(call.isTailCall());
+        assertEquals(0, call.getTailReturnMode());
+    }
+
+    @Test
+    void marksSelfCallsFollowedByJumpsToTheEndAsTailCalls() {
+        List<LinkedHashMap<String, Variable.Definition>> vars = Programs.scope("int n");
+        List<Instruction> code = new ArrayList<>();
+        Instruction.If condition = new Instruction.If(0, "n > 0", vars);
+        code.addAll(condition.getChain());
+        Instruction.Call call = new Instruction.Call("count", "n - 1", null, vars);
+        code.add(call);
+        code.add(new Instruction.Jump(4));
+        code.add(new Instruction.Let("m", "1", vars));
+        condition.setJumpTo(3);
+        Optimizer.optimize(code, "count", List.of());
+        assertEquals(Instruction.Call.RETURN_NOTHING, call.getTailReturnMode());
+        code.add(new Instruction.Return("", vars));
+        Optimizer.optimize(code, "count", List.of());
+        assertEquals(Instruction.Call.RETURN_NULL, call.getTailReturnMode());
+    }
+
+    @Test
+    void doesNotMarkCallsReturningSomethingElse() {
+        List<LinkedHashMap<String, Variable.Definition>> vars = Programs.scope("int n");
+        List<Instruction> code = new ArrayList<>();
+        Instruction.Call call = new Instruction.Call("count", "n - 1", "int r", vars);
+        code.add(call);
+        code.add(new Instruction.Return("r + 1", vars));
+        Optimizer.optimize(code, "count", List.of());
+        assertFalse(call.isTailCall());
+        code.set(1, new Instruction.Return("n", vars));
+        Optimizer.optimize(code, "count", List.of());
+        assertFalse(call.isTailCall());
+        // calls to other aliases are never tail calls
+        code.set(1, new Instruction.Return("r", vars));
+        Optimizer.optimize(code, "other", List.of());
+        assertFalse(call.isTailCall());
+        // nor is anything followed by more than returning
+        code.set(1, new Instruction.Let("r", "r + 1", vars));
+        code.add(new Instruction.Return("r", vars));
+        Optimizer.optimize(code, "count", List.of());
+        assertFalse(call.isTailCall());
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.birblett.impl.command.alias.language;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Builds and runs instructions outside the game. Programs run in a single frame the way the interpreter runs them,
+ * without a context, so they can't contain anything that needs one, such as commands or calls.
+ */
+final class Programs {
+
+    // stops programs that never finish instead of hanging the test
+    private static final int LIMIT = 100000;
+
+    private Programs() {}
+
+    /**
+     * @param arguments "type name" of each argument, in slot order
+     * @return a scope with the arguments declared, as the compiler starts with
+     */
+    static List<LinkedHashMap<String, Variable.Definition>> scope(String... arguments) {
+        List<LinkedHashMap<String, Variable.Definition>> vars = new ArrayList<>();
+        vars.add(new LinkedHashMap<>());
+        for (String argument : arguments) {
+            String[] typeAndName = argument.split(" ");
+            vars.getLast().put(typeAndName[1], new Variable.Definition(typeAndName[1], typeAndName[0], new String[0],
+                    Variable.Definition.nextSlot(vars)));
+        }
+        return vars;
+    }
+
+    static int slot(List<LinkedHashMap<String, Variable.Definition>> vars, String name) {
+        for (int i = vars.size() - 1; i >= 0; i--) {
+            if (vars.get(i).containsKey(name)) {
+                return vars.get(i).get(name).slot;
+            }
+        }
+        throw new AssertionError(name + " isn't declared");
+    }
+
+    static Frame frame(List<LinkedHashMap<String, Variable.Definition>> vars) {
+        return new Frame(Variable.Definition.nextSlot(vars));
+    }
+
+    /**
+     * Runs from an address until the program ends, returns, fails a line or suspends.
+     * @return address after the end of the program or after the suspending instruction, or the -2 or -5 it stopped
+     * with
+     */
+    static int run(List<Instruction> code, Frame frame, int address) {
+        for (int steps = 0; address < code.size(); steps++) {
+            if (steps == LIMIT) {
+                throw new AssertionError("program didn't finish within " + LIMIT + " instructions: " + code);
+            }
+            int out = code.get(address).execute(null, null, frame);
+            if (out == -2 || out == -5) {
+                return out;
+            }
+            if (out == -4) {
+                throw new AssertionError("calls can't be run outside the game");
+            }
+            address = out >= 0 ? out : address + 1;
+            if (out == -3) {
+                return address;
+            }
+        }
+        return address;
+    }
+
+    static int run(List<Instruction> code, Frame frame) {
+        return Programs.run(code, frame, 0);
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.birblett.impl.command.alias.language;
+
+import com.mojang.brigadier.StringReader;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SelectionArgumentTypeTest {
+
+    private static final SelectionArgumentType TYPE = new SelectionArgumentType(new String[]{"add", "sub-tract", "x.y"});
+
+    @Test
+    void readsOneWord() throws CommandSyntaxException {
+        StringReader reader = new StringReader("sub-tract 2 3");
+        assertEquals("sub-tract", TYPE.parse(reader));
+        assertEquals(9, reader.getCursor());
+        assertEquals("x.y", TYPE.parse(new StringReader("x.y")));
+        // the dispatcher rejects whatever is left, as it does for the word clients read
+        reader = new StringReader("add:b");
+        assertEquals("add", TYPE.parse(reader));
+        assertEquals(3, reader.getCursor());
+    }
+
+    @Test
+    void rejectsOtherInputWithoutMovingTheCursor() {
+        for (String input : new String[]{"multiply", "ad", "\"add\"", ""}) {
+            StringReader reader = new StringReader(input);
+            assertThrows(CommandSyntaxException.class, () -> TYPE.parse(reader));
+            assertEquals(0, reader.getCursor(), input);
+        }
+    }
+
+    @Test
+    void findsOptionsThatArentSingleWords() {
+        assertNull(SelectionArgumentType.findUntypeableOption(new String[]{"add", "Sub_1", "a.b+c-d"}));
+        assertEquals("a:b", SelectionArgumentType.findUntypeableOption(new String[]{"add", "a:b", "c/d"}));
+        assertEquals("c/d", SelectionArgumentType.findUntypeableOption(new String[]{"c/d"}));
+        assertEquals("a b", SelectionArgumentType.findUntypeableOption(new String[]{"a b"}));
+        assertEquals("", SelectionArgumentType.findUntypeableOption(new String[]{""}));
+    }
+
+}
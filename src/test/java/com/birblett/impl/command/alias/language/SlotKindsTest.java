@@ -0,0 +1,96 @@
+package com.birblett.impl.command.alias.language;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SlotKindsTest {
+
+    /**
+     * Writes a mix of slots that always hold the same kind and slots that don't, reading argument n.
+     */
+    private static List<Instruction> program(List<LinkedHashMap<String, Variable.Definition>> vars) {
+        List<Instruction> code = new ArrayList<>();
+        code.add(new Instruction.Let("a", "n * 3 + 1", vars));
+        code.add(new Instruction.Let("b", "a / 2.0", vars));
+        code.add(new Instruction.Let("s", "\"n=\" + a", vars));
+        code.add(new Instruction.Let("d", "1", vars));
+        Instruction.If condition = new Instruction.If(4, "n > 0", vars);
+        code.addAll(condition.getChain());
+        code.add(new Instruction.Let("d", "\"positive\"", vars));
+        condition.setJumpTo(code.size());
+        code.add(new Instruction.Let("c", "0", vars));
+        Instruction.While loop = new Instruction.While(code.size(), "c < a", vars);
+        code.addAll(loop.getChain());
+        code.add(new Instruction.Let("c", "c + 2", vars));
+        code.add(new Instruction.Jump(loop.startAddress));
+        loop.setJumpTo(code.size());
+        code.add(new Instruction.Let("e", "c % 4 + b * a - d + s", vars));
+        code.add(new Instruction.Declare("list", "double", "xs", vars));
+        return code;
+    }
+
+    @Test
+    void infersKindsWrittenByEveryInstruction() {
+        List<LinkedHashMap<String, Variable.Definition>> vars = Programs.scope("int n");
+        List<Instruction> code = SlotKindsTest.program(vars);
+        SlotKinds kinds = new SlotKinds();
+        kinds.write(Programs.slot(vars, "n"), SlotKinds.ofClass(Integer.class));
+        kinds.infer(code);
+        assertEquals(Frame.LONG, kinds.get(Programs.slot(vars, "a")));
+        assertEquals(Frame.DOUBLE, kinds.get(Programs.slot(vars, "b")));
+        assertEquals(Frame.OBJECT, kinds.get(Programs.slot(vars, "s")));
+        assertEquals(SlotKinds.DYNAMIC, kinds.get(Programs.slot(vars, "d")));
+        // only known once the loop's own write is seen to keep it a long
+        assertEquals(Frame.LONG, kinds.get(Programs.slot(vars, "c")));
+        assertEquals(SlotKinds.DYNAMIC, kinds.get(Programs.slot(vars, "e")));
+        assertEquals(Frame.OBJECT, kinds.get(Programs.slot(vars, "xs")));
+        assertEquals(Frame.DOUBLE, kinds.getElements(Programs.slot(vars, "xs")));
+        assertEquals(SlotKinds.DYNAMIC, kinds.getElements(Programs.slot(vars, "a")));
+    }
+
+    @Test
+    void treatsUnwrittenSlotsAsDynamic() {
+        List<LinkedHashMap<String, Variable.Definition>> vars = Programs.scope("int n");
+        SlotKinds kinds = new SlotKinds();
+        kinds.infer(SlotKindsTest.program(vars));
+        assertEquals(SlotKinds.DYNAMIC, kinds.get(Programs.slot(vars, "n")));
+        assertEquals(SlotKinds.DYNAMIC, kinds.get(Programs.slot(vars, "a")));
+        assertEquals(Frame.LONG, kinds.get(Programs.slot(vars, "c")));
+        assertEquals(SlotKinds.DYNAMIC, kinds.get(1000));
+    }
+
+    @Test
+    void combinesArithmeticKinds() {
+        assertEquals(Frame.LONG, SlotKinds.arithmetic(Frame.LONG, Frame.LONG));
+        assertEquals(Frame.DOUBLE, SlotKinds.arithmetic(Frame.LONG, Frame.DOUBLE));
+        assertEquals(Frame.DOUBLE, SlotKinds.arithmetic(Frame.FLOAT, Frame.LONG));
+        assertEquals(Frame.OBJECT, SlotKinds.arithmetic(Frame.DOUBLE, Frame.OBJECT));
+        assertEquals(SlotKinds.DYNAMIC, SlotKinds.arithmetic(Frame.OBJECT, SlotKinds.DYNAMIC));
+        assertEquals(Frame.UNSET, SlotKinds.arithmetic(Frame.UNSET, Frame.LONG));
+    }
+
+    @Test
+    void specializedProgramsComputeTheSame() {
+        List<LinkedHashMap<String, Variable.Definition>> vars = Programs.scope("int n");
+        List<Variable.Definition> arguments = List.copyOf(vars.getFirst().values());
+        List<Instruction> code = SlotKindsTest.program(vars);
+        List<Instruction> specialized = Optimizer.optimize(code, null, arguments), dynamic = Optimizer.optimize(code);
+        for (long n : new long[]{-4, 0, 1, 7}) {
+            Frame expected = Programs.frame(vars), actual = Programs.frame(vars);
+            expected.setLong(Programs.slot(vars, "n"), n);
+            actual.setLong(Programs.slot(vars, "n"), n);
+            Programs.run(dynamic, expected);
+            Programs.run(specialized, actual);
+            for (int slot = 0; slot < expected.size(); slot++) {
+                assertEquals(expected.kind(slot), actual.kind(slot), "kind of slot " + slot);
+                assertEquals(expected.getString(slot), actual.getString(slot), "value of slot " + slot);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,85 @@
+package com.birblett.util;
+
+import com.mojang.brigadier.suggestion.Suggestion;
+import com.mojang.brigadier.suggestion.SuggestionsBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrefixIndexTest {
+
+    private static List<String> suggest(PrefixIndex index, String input) {
+        return index.suggest(new SuggestionsBuilder(input, 0)).join().getList().stream().map(Suggestion::getText)
+                .sorted().toList();
+    }
+
+    private static PrefixIndex of(String... names) {
+        PrefixIndex index = new PrefixIndex();
+        for (String name : names) {
+            index.add(name);
+        }
+        return index;
+    }
+
+    @Test
+    void suggestsNamesByPrefix() {
+        PrefixIndex index = PrefixIndexTest.of("fizzbuzz", "fib", "echo", "math");
+        assertEquals(List.of("echo", "fib", "fizzbuzz", "math"), PrefixIndexTest.suggest(index, ""));
+        assertEquals(List.of("fib", "fizzbuzz"), PrefixIndexTest.suggest(index, "fi"));
+        assertEquals(List.of("fizzbuzz"), PrefixIndexTest.suggest(index, "fiz"));
+        assertEquals(List.of(), PrefixIndexTest.suggest(index, "x"));
+        assertEquals(List.of(), PrefixIndexTest.suggest(index, "fizzbuzzz"));
+    }
+
+    @Test
+    void matchesCaseInsensitivelyAndAfterUnderscores() {
+        PrefixIndex index = PrefixIndexTest.of("Mined_Stone", "a__b", "stone");
+        assertEquals(List.of("Mined_Stone"), PrefixIndexTest.suggest(index, "MIN"));
+        assertEquals(List.of("Mined_Stone", "stone"), PrefixIndexTest.suggest(index, "st"));
+        assertEquals(List.of("a__b"), PrefixIndexTest.suggest(index, "_b"));
+        assertEquals(List.of("a__b"), PrefixIndexTest.suggest(index, "b"));
+        assertEquals(List.of(), PrefixIndexTest.suggest(index, "ned"));
+    }
+
+    @Test
+    void forgetsRemovedNames() {
+        PrefixIndex index = PrefixIndexTest.of("fib", "fibonacci", "fizz_fib");
+        index.remove("fibonacci");
+        assertEquals(List.of("fib", "fizz_fib"), PrefixIndexTest.suggest(index, "f"));
+        assertEquals(List.of(), PrefixIndexTest.suggest(index, "fibo"));
+        index.remove("fizz_fib");
+        assertEquals(List.of("fib"), PrefixIndexTest.suggest(index, ""));
+        // removing twice or removing unknown names does nothing
+        index.remove("fizz_fib");
+        index.remove("other");
+        assertEquals(List.of("fib"), PrefixIndexTest.suggest(index, ""));
+        index.add("fizz_fib");
+        assertEquals(List.of("fizz_fib"), PrefixIndexTest.suggest(index, "fiz"));
+        index.clear();
+        assertEquals(List.of(), PrefixIndexTest.suggest(index, ""));
+    }
+
+    @Test
+    void keepsNamesThatDifferOnlyInCase() {
+        PrefixIndex index = PrefixIndexTest.of("Stat", "stat");
+        assertEquals(List.of("Stat", "stat"), PrefixIndexTest.suggest(index, "s"));
+        index.remove("stat");
+        assertEquals(List.of("Stat"), PrefixIndexTest.suggest(index, "s"));
+    }
+
+    @Test
+    void capsSuggestions() {
+        PrefixIndex index = new PrefixIndex();
+        for (int i = 0; i < PrefixIndex.LIMIT * 2; i++) {
+            index.add("name" + i);
+        }
+        assertEquals(PrefixIndex.LIMIT, PrefixIndexTest.suggest(index, "").size());
+        assertEquals(PrefixIndex.LIMIT, PrefixIndexTest.suggest(index, "name").size());
+        // the input itself isn't suggested
+        assertEquals(List.of("name500", "name501", "name502", "name503", "name504", "name505", "name506", "name507",
+                "name508", "name509"), PrefixIndexTest.suggest(index, "name50"));
+    }
+
+}